@@ -0,0 +1,81 @@
+package ghopt.core.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Chart inputs shared by the benchmarks.
+ *
+ * A fixture name is either a path relative to the resources folder (set with -Dghopt.resources,
+ * default "resources") or "synthetic-N", which writes a generated N-note .chart to a temp file.
+ */
+final class ChartFixtures {
+
+    static final String BEAST = "Avenged Sevenfold - Beast and the Harlot/notes.mid";
+    static final String BOY_DIVISION = "My Chemical Romance - Boy Division (C.H. Uruguay [(PENDING RECHART)])/notes.chart";
+    static final String HANG_EM_HIGH = "My Chemical Romance - Hang 'Em High (Miscellany)/notes.chart";
+    static final String REPTILIA = "The Strokes - Reptilia/notes.mid";
+    static final String CAUGHT_FIRE = "The Used - I Caught Fire (PeckInkay)/notes.chart";
+
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+
+    private ChartFixtures() {}
+
+    static Path resolve(String fixture) throws IOException {
+        if (fixture.startsWith(SYNTHETIC_PREFIX)) {
+            int notes = Integer.parseInt(fixture.substring(SYNTHETIC_PREFIX.length()));
+            Path file = Files.createTempFile("ghopt-bench-", ".chart");
+            file.toFile().deleteOnExit();
+            Files.write(file, syntheticChart(notes).getBytes(StandardCharsets.UTF_8));
+            return file;
+        }
+        return Paths.get(System.getProperty("ghopt.resources", "resources"), fixture);
+    }
+
+    /**
+     * Expert guitar chart of roughly {@code noteCount} notes: eighth-note chords and singles with
+     * occasional sustains, a star power phrase every 64 notes and a few tempo/meter changes.
+     */
+    static String syntheticChart(int noteCount) {
+        int resolution = 192;
+        int step = resolution / 2;
+        Random random = new Random(noteCount);
+
+        StringBuilder sb = new StringBuilder(noteCount * 16);
+        sb.append("[Song]\n{\n  Resolution = ").append(resolution).append("\n}\n");
+
+        sb.append("[SyncTrack]\n{\n");
+        for (int bar = 0; bar * 4 * resolution < noteCount * step; bar += 32) {
+            int tick = bar * 4 * resolution;
+            sb.append("  ").append(tick).append(" = TS ").append(bar % 64 == 0 ? 4 : 3).append('\n');
+            sb.append("  ").append(tick).append(" = B ").append(120000 + (bar % 96) * 500).append('\n');
+        }
+        sb.append("}\n");
+
+        sb.append("[ExpertSingle]\n{\n");
+        int written = 0;
+        int tick = 0;
+        while (written < noteCount) {
+            if (written % 64 == 0) {
+                sb.append("  ").append(tick).append(" = S 2 ").append(16 * step).append('\n');
+            }
+            int chordSize = random.nextInt(8) == 0 ? 2 : 1;
+            int lane = random.nextInt(5 - chordSize + 1);
+            int sustain = random.nextInt(10) == 0 ? step * (1 + random.nextInt(4)) : 0;
+            for (int c = 0; c < chordSize && written < noteCount; c++) {
+                sb.append("  ").append(tick).append(" = N ").append(lane + c).append(' ').append(sustain).append('\n');
+                written++;
+            }
+            if (random.nextInt(6) == 0) {
+                sb.append("  ").append(tick).append(" = N 5 0\n");
+            }
+            tick += step;
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
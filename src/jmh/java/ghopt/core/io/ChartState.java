@@ -0,0 +1,35 @@
+package ghopt.core.io;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@State(Scope.Benchmark)
+public class ChartState {
+
+    @Param({
+            ChartFixtures.BEAST,
+            ChartFixtures.BOY_DIVISION,
+            ChartFixtures.HANG_EM_HIGH,
+            ChartFixtures.REPTILIA,
+            ChartFixtures.CAUGHT_FIRE,
+            "synthetic-1000",
+            "synthetic-10000",
+            "synthetic-100000"
+    })
+    public String chart;
+
+    Path chartFile;
+    ColumnarChartData chartData;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        chartFile = ChartFixtures.resolve(chart);
+        chartData = ColumnarChartData.from(ChartParser.parseChart(chartFile.toString()));
+    }
+}
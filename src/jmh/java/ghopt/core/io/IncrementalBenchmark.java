@@ -0,0 +1,67 @@
+package ghopt.core.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+
+/**
+ * Re-optimizing after a one-note edit in the middle of the chart, against solving the edited
+ * chart from scratch. The tables are healed between invocations, as the watch mode does
+ * between saves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IncrementalBenchmark {
+
+    @Param({
+            ChartFixtures.BEAST,
+            ChartFixtures.CAUGHT_FIRE,
+            "synthetic-10000"
+    })
+    public String chart;
+
+    private ColumnarChartData original;
+    private ColumnarChartData edited;
+    private IncrementalOptimizer optimizer;
+    private boolean showingEdit;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        ChartParser.ChartData chartData = ChartParser.parseChart(ChartFixtures.resolve(chart).toString());
+        original = ColumnarChartData.from(chartData);
+        chartData.notes.get(chartData.notes.size() / 2).duration += chartData.resolution;
+        edited = ColumnarChartData.from(chartData);
+
+        optimizer = new IncrementalOptimizer();
+        optimizer.update(original);
+    }
+
+    @Setup(Level.Invocation)
+    public void heal() {
+        optimizer.heal();
+    }
+
+    @Benchmark
+    public StarPowerOptimizer.OptimalPath updateAfterEdit() {
+        showingEdit = !showingEdit;
+        return optimizer.update(showingEdit ? edited : original);
+    }
+
+    @Benchmark
+    public StarPowerOptimizer.OptimalPath fullSolveAfterEdit() {
+        return StarPowerOptimizer.findOptimalPath(edited);
+    }
+}
@@ -0,0 +1,73 @@
+package ghopt.core.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss512m") // the recursive reference solver recurses once per group
+public class OptimizerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class RulesState {
+        @Param({"clonehero", "guitarhero"})
+        public String rules;
+
+        Rules gameRules;
+        List<StarPowerOptimizer.GroupInfo> groups;
+
+        @Setup(Level.Trial)
+        public void prepare(ChartState chart) {
+            gameRules = Rules.named(rules);
+            groups = StarPowerOptimizer.prepareGroups(chart.chartData, gameRules);
+        }
+    }
+
+    @Benchmark
+    public List<StarPowerOptimizer.GroupInfo> buildGroups(ChartState state, RulesState rules) {
+        return StarPowerOptimizer.prepareGroups(state.chartData, rules.gameRules);
+    }
+
+    @Benchmark
+    public StarPowerOptimizer.OptimalPath solveSpecialized(RulesState rules) {
+        return StarPowerOptimizer.solve(rules.groups, rules.gameRules, false, StarPowerOptimizer.SolverMode.SPECIALIZED);
+    }
+
+    // The extended model's solver on the standard meter, to compare its overhead with the tables.
+    @Benchmark
+    public StarPowerOptimizer.OptimalPath solveFrontier(RulesState rules) {
+        return new FrontierSolver(rules.groups, rules.gameRules, FrontierSolver.Spans.standard(rules.groups), 1).run();
+    }
+
+    @Benchmark
+    public StarPowerOptimizer.OptimalPath solveIterative(RulesState rules) {
+        return StarPowerOptimizer.solve(rules.groups, rules.gameRules, false, StarPowerOptimizer.SolverMode.ITERATIVE);
+    }
+
+    @Benchmark
+    public StarPowerOptimizer.OptimalPath solveRecursive(RulesState rules) {
+        return StarPowerOptimizer.solve(rules.groups, rules.gameRules, false, StarPowerOptimizer.SolverMode.RECURSIVE);
+    }
+
+    @Benchmark
+    public StarPowerOptimizer.OptimalPath findOptimalPath(ChartState state, RulesState rules) {
+        return StarPowerOptimizer.findOptimalPath(state.chartData, rules.gameRules);
+    }
+
+    @Benchmark
+    public StarPowerOptimizer.OptimalPath findExtendedPath(ChartState state, RulesState rules) {
+        return ExtendedOptimizer.findOptimalPath(state.chartData, rules.gameRules);
+    }
+}
@@ -0,0 +1,33 @@
+package ghopt.core.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Benchmark
+    public ChartParser.ChartData parse(ChartState state) throws IOException {
+        return ChartParser.parseChart(state.chartFile.toString());
+    }
+
+    @Benchmark
+    public ColumnarChartData parseColumnar(ChartState state) throws IOException {
+        return ColumnarChartData.from(ChartParser.parseChart(state.chartFile.toString()));
+    }
+
+    @Benchmark
+    public Map<ChartParser.Track, ChartParser.ChartData> parseAllTracks(ChartState state) throws IOException {
+        return ChartParser.parseAllTracks(state.chartFile.toString());
+    }
+}
@@ -0,0 +1,63 @@
+package ghopt.core.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+
+    @Param({
+            ChartFixtures.BEAST,
+            ChartFixtures.HANG_EM_HIGH,
+            ChartFixtures.REPTILIA,
+            "synthetic-1000",
+            "synthetic-10000"
+    })
+    public String chart;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"HIGH", "FAST"})
+    public ChartRenderer.Quality quality;
+
+    private ColumnarChartData chartData;
+    private List<Integer> activationTimes;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        chartData = ColumnarChartData.from(ChartParser.parseChart(ChartFixtures.resolve(chart).toString()));
+        activationTimes = StarPowerOptimizer.findOptimalPath(chartData).activationTimes;
+        output = Files.createTempFile("ghopt-bench-", ".png");
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void renderPng() throws IOException {
+        ChartRenderer.writePng(chartData, output.toString(), activationTimes, threads, quality);
+    }
+}
@@ -0,0 +1,451 @@
+package ghopt.cli;
+
+import ghopt.core.io.ChartCache;
+import ghopt.core.io.ChartParser;
+import ghopt.core.io.ChartRenderer;
+import ghopt.core.io.ColumnarChartData;
+import ghopt.core.io.ExtendedOptimizer;
+import ghopt.core.io.Metrics;
+import ghopt.core.io.OptimalPathCache;
+import ghopt.core.io.PathTrace;
+import ghopt.core.io.Rules;
+import ghopt.core.io.StarPowerOptimizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class BatchOptimizer {
+
+    // Checked in order, so a folder with both files is optimized from its .chart.
+    private static final String[] CHART_FILE_NAMES = {"notes.chart", "notes.mid"};
+    private static final int PATH_CACHE_ENTRIES = 1024;
+
+    public static class SongResult {
+        public String songFolder;
+        public String chartFile;
+        public String track = ChartParser.Track.EXPERT_GUITAR.toString();
+        public int noteCount;
+        public long baseScore;
+        public long optimalScore;
+        public List<Integer> activationTimes = new ArrayList<>();
+        public long parseMillis;
+        public long solveMillis;
+        public List<Metrics.Sample> samples = new ArrayList<>();
+        public String error;
+
+        @Override
+        public String toString() {
+            return "SongResult{" +
+                    "songFolder='" + songFolder + '\'' +
+                    ", track=" + track +
+                    ", optimalScore=" + optimalScore +
+                    ", activationTimes=" + activationTimes +
+                    ", error=" + error +
+                    '}';
+        }
+    }
+
+    /** What a batch run solves, and what it writes besides the summary. */
+    public static class BatchOptions {
+        public Rules rules = Rules.CLONE_HERO;
+        public boolean extended; // credit whammy and squeezes, see ExtendedOptimizer
+        public boolean allTracks; // every instrument and difficulty, one result per track
+        public ChartRenderer.Quality imageQuality; // null skips the images
+        public boolean traces; // each path's PathTrace as trace.jsonl (trace-<track>.jsonl) next to the chart
+        public ChartCache cache;
+        public OptimalPathCache pathCache;
+    }
+
+    public static List<Path> findChartFiles(Path songsRoot) throws IOException {
+        try (Stream<Path> dirs = Files.walk(songsRoot)) {
+            return dirs.filter(Files::isDirectory)
+                    .map(BatchOptimizer::chartFileIn)
+                    .filter(p -> p != null)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Path chartFileIn(Path folder) {
+        for (String name : CHART_FILE_NAMES) {
+            Path candidate = folder.resolve(name);
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /** Optimizes every chart on {@code threads} workers; results are sorted by song folder. */
+    public static List<SongResult> optimizeAll(List<Path> chartFiles, int threads, BatchOptions options)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SongResult>> futures = new ArrayList<>();
+            if (options.allTracks) {
+                // Each file's task parses it and then queues its tracks' solves. Only a few files
+                // are in flight at a time, so solves start as soon as the first file is parsed and
+                // a song's tracks are dropped once they are solved, however large the library.
+                Semaphore inFlight = new Semaphore(threads * 2);
+                List<CompletableFuture<List<SongResult>>> songs = new ArrayList<>();
+                for (Path chartFile : chartFiles) {
+                    inFlight.acquire();
+                    CompletableFuture<List<SongResult>> song = CompletableFuture
+                            .supplyAsync(() -> parseTracks(chartFile, options.cache), pool)
+                            .thenCompose(parsed -> solveTracks(chartFile, parsed, options, pool));
+                    song.whenComplete((solved, e) -> inFlight.release());
+                    songs.add(song);
+                }
+                for (int i = 0; i < songs.size(); i++) {
+                    try {
+                        futures.addAll(songs.get(i).join().stream()
+                                .map(CompletableFuture::completedFuture)
+                                .collect(Collectors.toList()));
+                    } catch (CompletionException e) {
+                        // optimizeTrack records its own failures, so anything else is the parse.
+                        Throwable cause = e.getCause();
+                        if (cause instanceof Error) {
+                            throw new IllegalStateException(cause);
+                        }
+                        if (cause instanceof UncheckedIOException) {
+                            cause = cause.getCause();
+                        }
+                        SongResult failed = newResult(chartFiles.get(i));
+                        failed.error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+                        futures.add(CompletableFuture.completedFuture(failed));
+                    }
+                }
+            } else {
+                for (Path chartFile : chartFiles) {
+                    futures.add(pool.submit(() -> optimizeSong(chartFile, options)));
+                }
+            }
+
+            List<SongResult> results = new ArrayList<>();
+            for (Future<SongResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // optimizeSong records its own failures, so this only sees Errors.
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            // Stable, so a song's tracks stay in parse order.
+            results.sort(Comparator.comparing(r -> r.songFolder));
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class ParsedSong {
+        Map<ChartParser.Track, ColumnarChartData> tracks = new LinkedHashMap<>();
+        long parseMillis;
+        List<Metrics.Sample> samples;
+    }
+
+    private static ParsedSong parseTracks(Path chartFile, ChartCache cache) {
+        try (Metrics.Collector collector = Metrics.collect()) {
+            long start = System.nanoTime();
+            ParsedSong song = new ParsedSong();
+            if (cache != null) {
+                song.tracks = cache.loadAllTracks(chartFile);
+            } else {
+                for (Map.Entry<ChartParser.Track, ChartParser.ChartData> track : ChartParser.parseAllTracks(chartFile.toString()).entrySet()) {
+                    song.tracks.put(track.getKey(), ColumnarChartData.from(track.getValue()));
+                }
+            }
+            song.parseMillis = (System.nanoTime() - start) / 1_000_000;
+            song.samples = collector.samples();
+            return song;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CompletableFuture<List<SongResult>> solveTracks(Path chartFile, ParsedSong song,
+                                                                   BatchOptions options, ExecutorService pool) {
+        List<CompletableFuture<SongResult>> tracks = new ArrayList<>();
+        // The file's parse is reported once, with its first track.
+        List<Metrics.Sample> parseSamples = song.samples;
+        for (Map.Entry<ChartParser.Track, ColumnarChartData> track : song.tracks.entrySet()) {
+            List<Metrics.Sample> carried = parseSamples;
+            parseSamples = List.of();
+            tracks.add(CompletableFuture.supplyAsync(() -> {
+                SongResult result = optimizeTrack(chartFile, track.getKey(), track.getValue(), song.parseMillis, options);
+                result.samples.addAll(0, carried);
+                return result;
+            }, pool));
+        }
+        return CompletableFuture.allOf(tracks.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> tracks.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    /** Optimizes the expert guitar track of one chart; failures are recorded in the result. */
+    public static SongResult optimizeSong(Path chartFile, BatchOptions options) {
+        try (Metrics.Collector collector = Metrics.collect()) {
+            long start = System.nanoTime();
+            ColumnarChartData chartData = options.cache != null
+                    ? options.cache.load(chartFile)
+                    : ColumnarChartData.from(ChartParser.parseChart(chartFile.toString()));
+            long parseMillis = (System.nanoTime() - start) / 1_000_000;
+            SongResult result = optimizeTrack(chartFile, ChartParser.Track.EXPERT_GUITAR, chartData, parseMillis, options);
+            result.samples = collector.samples();
+            return result;
+        } catch (Exception e) {
+            SongResult result = newResult(chartFile);
+            result.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            return result;
+        }
+    }
+
+    private static SongResult optimizeTrack(Path chartFile, ChartParser.Track track, ColumnarChartData chartData,
+                                            long parseMillis, BatchOptions options) {
+        Rules rules = options.rules;
+        SongResult result = newResult(chartFile);
+        result.track = track.toString();
+        result.parseMillis = parseMillis;
+
+        try (Metrics.Collector collector = Metrics.collect()) {
+            result.samples = collector.samples();
+            long start = System.nanoTime();
+            // Without a path cache, a traced standard solve records the trace from its own groups.
+            StarPowerOptimizer.OptimalPath path = options.pathCache != null
+                    ? options.pathCache.findOptimalPath(chartData, rules, options.extended)
+                    : options.extended
+                    ? ExtendedOptimizer.findOptimalPath(chartData, rules)
+                    : StarPowerOptimizer.findOptimalPath(chartData, rules, options.traces,
+                            StarPowerOptimizer.SolverMode.SPECIALIZED);
+            long solved = System.nanoTime();
+
+            result.noteCount = chartData.noteCount;
+            result.baseScore = StarPowerOptimizer.calculateBaseScore(chartData, rules);
+            result.optimalScore = path.totalScore;
+            result.activationTimes = path.activationTimes;
+            result.solveMillis = (solved - start) / 1_000_000;
+
+            if (options.imageQuality != null) {
+                String imageName = track == ChartParser.Track.EXPERT_GUITAR ? "output.png" : "output-" + track + ".png";
+                String imagePath = chartFile.resolveSibling(imageName).toString();
+                // Songs already run in parallel, so each image is rendered on its worker thread.
+                ChartRenderer.writePng(chartData, imagePath, path.activationTimes, 1, options.imageQuality);
+            }
+            if (options.traces) {
+                String traceName = track == ChartParser.Track.EXPERT_GUITAR ? "trace.jsonl" : "trace-" + track + ".jsonl";
+                // Cached and extended paths are replayed from their activations.
+                PathTrace trace = path.trace != null
+                        ? path.trace
+                        : StarPowerOptimizer.trace(chartData, rules, path.activationTimes);
+                ScoreOptimizer.writeTrace(trace, chartFile.resolveSibling(traceName));
+            }
+        } catch (Exception e) {
+            result.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        return result;
+    }
+
+    private static SongResult newResult(Path chartFile) {
+        SongResult result = new SongResult();
+        result.songFolder = chartFile.getParent().toString();
+        result.chartFile = chartFile.getFileName().toString();
+        return result;
+    }
+
+    public static void writeCsv(List<SongResult> results, File outputFile) throws IOException {
+        try (PrintWriter out = new PrintWriter(outputFile, StandardCharsets.UTF_8)) {
+            out.println("song_folder,chart_file,track,note_count,base_score,optimal_score,activation_times,parse_ms,solve_ms,error");
+            for (SongResult r : results) {
+                out.println(csvField(r.songFolder) + "," +
+                        csvField(r.chartFile) + "," +
+                        r.track + "," +
+                        r.noteCount + "," +
+                        r.baseScore + "," +
+                        r.optimalScore + "," +
+                        csvField(r.activationTimes.stream().map(String::valueOf).collect(Collectors.joining(" "))) + "," +
+                        r.parseMillis + "," +
+                        r.solveMillis + "," +
+                        csvField(r.error == null ? "" : r.error));
+            }
+        }
+    }
+
+    public static void writeJson(List<SongResult> results, File outputFile) throws IOException {
+        try (PrintWriter out = new PrintWriter(outputFile, StandardCharsets.UTF_8)) {
+            out.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                SongResult r = results.get(i);
+                out.print("  {\"songFolder\": " + jsonString(r.songFolder) +
+                        ", \"chartFile\": " + jsonString(r.chartFile) +
+                        ", \"track\": " + jsonString(r.track) +
+                        ", \"noteCount\": " + r.noteCount +
+                        ", \"baseScore\": " + r.baseScore +
+                        ", \"optimalScore\": " + r.optimalScore +
+                        ", \"activationTimes\": " + r.activationTimes +
+                        ", \"parseMillis\": " + r.parseMillis +
+                        ", \"solveMillis\": " + r.solveMillis +
+                        ", \"error\": " + (r.error == null ? "null" : jsonString(r.error)) + "}");
+                out.println(i < results.size() - 1 ? "," : "");
+            }
+            out.println("]");
+        }
+    }
+
+    /** Per song and track, the timers and counters of each phase; see {@link Metrics}. */
+    public static void writeStats(List<SongResult> results, File outputFile) throws IOException {
+        try (PrintWriter out = new PrintWriter(outputFile, StandardCharsets.UTF_8)) {
+            out.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                SongResult r = results.get(i);
+                out.print("  {\"songFolder\": " + jsonString(r.songFolder) +
+                        ", \"track\": " + jsonString(r.track) +
+                        ", \"phases\": " + statsJson(r.samples) + "}");
+                out.println(i < results.size() - 1 ? "," : "");
+            }
+            out.println("]");
+        }
+    }
+
+    static String statsJson(List<Metrics.Sample> samples) {
+        StringBuilder sb = new StringBuilder("[");
+        for (Metrics.Sample sample : samples) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append("{\"phase\": ").append(jsonString(sample.phase.name().toLowerCase()))
+                    .append(", \"detail\": ").append(jsonString(sample.detail))
+                    .append(", \"millis\": ").append(String.format("%.3f", sample.nanos / 1e6));
+            switch (sample.phase) {
+                case PARSE:
+                    sb.append(", \"bytes\": ").append(sample.bytes)
+                            .append(", \"notes\": ").append(sample.noteCount);
+                    break;
+                case OPTIMIZE:
+                    sb.append(", \"groups\": ").append(sample.groupCount)
+                            .append(", \"cellsComputed\": ").append(sample.cellsComputed)
+                            .append(", \"memoSize\": ").append(sample.memoSize)
+                            .append(", \"peakMeter\": ").append(sample.peakMeter);
+                    break;
+                case RENDER:
+                    sb.append(", \"bytes\": ").append(sample.bytes);
+                    break;
+            }
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String csvField(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: java ghopt.cli.BatchOptimizer <songs-root> <summary.csv|summary.json> [--threads N] [--rules clonehero|guitarhero] [--extended] [--all-tracks] [--images | --fast-images] [--cache DIR] [--stats stats.json] [--trace]");
+        System.out.println("Example: java ghopt.cli.BatchOptimizer resources summary.csv --threads 8");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            printUsage();
+            return;
+        }
+
+        Path songsRoot = Paths.get(args[0]);
+        File summaryFile = new File(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        BatchOptions options = new BatchOptions();
+        File statsFile = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--rules") && i + 1 < args.length) {
+                options.rules = Rules.named(args[++i]);
+            } else if (args[i].equals("--extended")) {
+                options.extended = true;
+            } else if (args[i].equals("--all-tracks")) {
+                options.allTracks = true;
+            } else if (args[i].equals("--images")) {
+                options.imageQuality = ChartRenderer.Quality.HIGH;
+            } else if (args[i].equals("--fast-images")) {
+                options.imageQuality = ChartRenderer.Quality.FAST;
+            } else if (args[i].equals("--stats") && i + 1 < args.length) {
+                statsFile = new File(args[++i]);
+            } else if (args[i].equals("--trace")) {
+                options.traces = true;
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                Path cacheDir = Paths.get(args[++i]);
+                options.cache = new ChartCache(cacheDir);
+                options.pathCache = new OptimalPathCache(PATH_CACHE_ENTRIES, cacheDir.resolve("paths"));
+            } else {
+                // A mistyped option would otherwise quietly run without the feature it asked for.
+                System.out.println("Unknown option or missing value: " + args[i]);
+                printUsage();
+                return;
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Path> chartFiles = findChartFiles(songsRoot);
+        List<SongResult> results = optimizeAll(chartFiles, threads, options);
+
+        File summaryDir = summaryFile.getAbsoluteFile().getParentFile();
+        if (summaryDir != null && !summaryDir.exists()) {
+            summaryDir.mkdirs();
+        }
+        if (summaryFile.getName().toLowerCase().endsWith(".json")) {
+            writeJson(results, summaryFile);
+        } else {
+            writeCsv(results, summaryFile);
+        }
+
+        if (statsFile != null) {
+            writeStats(results, statsFile);
+        }
+
+        long failed = results.stream().filter(r -> r.error != null).count();
+        System.out.println("Optimized " + (results.size() - failed) + " of " + results.size() + (options.allTracks ? " tracks" : " songs") + " on " +
+                threads + " threads in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.out.println("Summary written to: " + summaryFile);
+    }
+}
@@ -2,8 +2,31 @@ package ghopt.cli;
 
 import ghopt.core.io.ChartParser;
 
+import java.util.Arrays;
+
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("batch")) {
+            BatchOptimizer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("watch")) {
+            WatchOptimizer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("score")) {
+            ScoreOptimizer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            OptimizerServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].startsWith("--")) {
+            System.out.println("Unknown option: " + args[0]);
+            System.out.println("Usage: java -jar <jar> [batch|watch|score|serve] ... or <chart-file-path> <output-image-path>");
+            return;
+        }
         ChartParser.main(args);
     }
-}
\ No newline at end of file
+}
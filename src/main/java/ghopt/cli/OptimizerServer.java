@@ -0,0 +1,349 @@
+package ghopt.cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ghopt.core.io.ChartParser;
+import ghopt.core.io.ChartRenderer;
+import ghopt.core.io.ChartTiles;
+import ghopt.core.io.ColumnarChartData;
+import ghopt.core.io.ExtendedOptimizer;
+import ghopt.core.io.OptimalPathCache;
+import ghopt.core.io.Rules;
+import ghopt.core.io.StarPowerOptimizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP service that keeps the parser, optimizer and renderer warm between charts.
+ *
+ * {@code /optimize} answers with the optimal path as JSON, {@code /image} with the chart
+ * rendered as a PNG, and {@code /tiles/{z}/{x}/{y}} with one 256 px tile of that image for a
+ * zoomable viewer (see {@link ChartTiles}). A chart is either the request body (POST, .chart or
+ * .mid bytes) or {@code ?path=} relative to the songs root the server was started with. Other
+ * parameters: {@code rules}, {@code extended}, {@code track} and, for images, {@code quality=fast}.
+ *
+ * Solved paths are kept in an {@link OptimalPathCache}, and requests for a path that is still
+ * being solved wait for that solve instead of starting their own.
+ */
+public class OptimizerServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int PATH_CACHE_ENTRIES = 1024;
+    private static final int MAX_UPLOAD_BYTES = 16 << 20;
+
+    private enum Response { PATH, IMAGE, TILE }
+
+    private final HttpServer server;
+    private final ExecutorService pool;
+    private final Path songsRoot;
+    private final Path tileCacheDir;
+    private final OptimalPathCache pathCache = new OptimalPathCache(PATH_CACHE_ENTRIES);
+    private final Map<String, CompletableFuture<StarPowerOptimizer.OptimalPath>> solving = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /** Listens on the loopback interface; {@code songsRoot} null only accepts uploads. */
+    public OptimizerServer(int port, int threads, Path songsRoot) throws IOException {
+        this(port, threads, songsRoot, null);
+    }
+
+    /** As above, keeping rendered tiles under {@code tileCacheDir} when it is not null. */
+    public OptimizerServer(int port, int threads, Path songsRoot, Path tileCacheDir) throws IOException {
+        this.songsRoot = songsRoot != null ? songsRoot.toAbsolutePath().normalize() : null;
+        this.tileCacheDir = tileCacheDir;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.pool = Executors.newFixedThreadPool(threads);
+        server.setExecutor(pool);
+        server.createContext("/optimize", exchange -> handle(exchange, Response.PATH));
+        server.createContext("/image", exchange -> handle(exchange, Response.IMAGE));
+        server.createContext("/tiles/", exchange -> handle(exchange, Response.TILE));
+        server.createContext("/health", exchange -> respond(exchange, 200, "application/json",
+                ("{\"status\": \"ok\", \"coalescedSolves\": " + coalesced.get() + "}").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    /** The bound port, which is the one picked by the system when constructed with 0. */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** Requests that waited on another request's solve instead of solving themselves. */
+    public long coalescedSolves() {
+        return coalesced.get();
+    }
+
+    private void handle(HttpExchange exchange, Response response) throws IOException {
+        try {
+            // Checked before the chart is read, so a malformed tile URL fails without a solve.
+            int[] tile = response == Response.TILE ? tileCoordinates(exchange.getRequestURI().getPath()) : null;
+            Map<String, String> params = queryParams(exchange.getRequestURI().getRawQuery());
+            Rules rules = Rules.named(params.getOrDefault("rules", Rules.CLONE_HERO.name));
+            boolean extended = Boolean.parseBoolean(params.getOrDefault("extended", "false"));
+            ChartParser.Track track = ChartParser.Track.named(
+                    params.getOrDefault("track", ChartParser.Track.EXPERT_GUITAR.toString()));
+
+            ColumnarChartData chartData = ColumnarChartData.from(readChart(exchange, params, track));
+            long start = System.nanoTime();
+            StarPowerOptimizer.OptimalPath path = findOptimalPath(chartData, rules, extended);
+            long solveMillis = (System.nanoTime() - start) / 1_000_000;
+
+            if (response == Response.IMAGE) {
+                ChartRenderer.Quality quality = "fast".equalsIgnoreCase(params.get("quality"))
+                        ? ChartRenderer.Quality.FAST
+                        : ChartRenderer.Quality.HIGH;
+                ByteArrayOutputStream png = new ByteArrayOutputStream();
+                // Requests already run in parallel, so each image is rendered on its own thread.
+                ChartRenderer.writePng(chartData, png, path.activationTimes, 1, quality);
+                respond(exchange, 200, "image/png", png.toByteArray());
+            } else if (response == Response.TILE) {
+                ChartTiles tiles = new ChartTiles(chartData, path.activationTimes, tileCacheDir);
+                int zoom = tile[0];
+                if (zoom > tiles.maxZoom() || tile[1] >= tiles.columns(zoom) || tile[2] >= tiles.rows(zoom)) {
+                    throw new RequestException(404, "No tile " + zoom + "/" + tile[1] + "/" + tile[2] +
+                            "; this chart has zoom levels 0-" + tiles.maxZoom());
+                }
+                respond(exchange, 200, "image/png", tiles.tile(zoom, tile[1], tile[2]));
+            } else {
+                String json = "{\"track\": " + BatchOptimizer.jsonString(track.toString()) +
+                        ", \"rules\": " + BatchOptimizer.jsonString(rules.name) +
+                        ", \"extended\": " + extended +
+                        ", \"noteCount\": " + chartData.noteCount +
+                        ", \"baseScore\": " + StarPowerOptimizer.calculateBaseScore(chartData, rules) +
+                        ", \"optimalScore\": " + path.totalScore +
+                        ", \"activationTimes\": " + path.activationTimes +
+                        ", \"solveMillis\": " + solveMillis + "}";
+                respond(exchange, 200, "application/json", json.getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (RequestException e) {
+            respondError(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            respondError(exchange, 400, e.getMessage());
+        } catch (NoSuchFileException e) {
+            respondError(exchange, 404, "No such chart: " + e.getMessage());
+        } catch (Exception e) {
+            respondError(exchange, 500, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The cached path, or a fresh solve. A request that arrives while the same chart and rules
+     * are being solved waits for that result.
+     */
+    StarPowerOptimizer.OptimalPath findOptimalPath(ColumnarChartData chartData, Rules rules, boolean extended)
+            throws IOException {
+        String key = pathCache.key(chartData, rules, extended);
+        StarPowerOptimizer.OptimalPath cached = pathCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<StarPowerOptimizer.OptimalPath> mine = new CompletableFuture<>();
+        CompletableFuture<StarPowerOptimizer.OptimalPath> running = solving.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                StarPowerOptimizer.OptimalPath path = running.join();
+                return new StarPowerOptimizer.OptimalPath(path.activationTimes, path.totalScore);
+            } catch (CompletionException e) {
+                // Fail the way the solving request did, not with the future's wrapper.
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            // Another request may have cached this path and finished between the lookup above
+            // and claiming the solve.
+            cached = pathCache.get(key);
+            if (cached != null) {
+                mine.complete(cached);
+                return new StarPowerOptimizer.OptimalPath(cached.activationTimes, cached.totalScore);
+            }
+            StarPowerOptimizer.OptimalPath path = solve(chartData, rules, extended);
+            pathCache.put(key, path);
+            mine.complete(path);
+            return new StarPowerOptimizer.OptimalPath(path.activationTimes, path.totalScore);
+        } catch (IOException | RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            solving.remove(key, mine);
+        }
+    }
+
+    // {z, x, y} from /tiles/{z}/{x}/{y}, with or without a .png suffix.
+    private static int[] tileCoordinates(String requestPath) {
+        String[] parts = requestPath.substring("/tiles/".length()).replaceFirst("\\.png$", "").split("/");
+        if (parts.length != 3) {
+            throw new RequestException(400, "Expected /tiles/{z}/{x}/{y}, got " + requestPath);
+        }
+        int[] tile = new int[3];
+        for (int i = 0; i < 3; i++) {
+            try {
+                tile[i] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new RequestException(400, "Expected /tiles/{z}/{x}/{y}, got " + requestPath);
+            }
+            if (tile[i] < 0) {
+                throw new RequestException(404, "No tile at " + requestPath);
+            }
+        }
+        return tile;
+    }
+
+    // Split out of findOptimalPath so tests can hold a solve open while other requests arrive.
+    StarPowerOptimizer.OptimalPath solve(ColumnarChartData chartData, Rules rules, boolean extended) {
+        return extended
+                ? ExtendedOptimizer.findOptimalPath(chartData, rules)
+                : StarPowerOptimizer.findOptimalPath(chartData, rules);
+    }
+
+    private ChartParser.ChartData readChart(HttpExchange exchange, Map<String, String> params,
+                                            ChartParser.Track track) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (method.equals("POST")) {
+            return ChartParser.parseChart(ByteBuffer.wrap(readBody(exchange.getRequestBody())), track);
+        }
+        if (!method.equals("GET")) {
+            throw new RequestException(405, "Expected GET with ?path= or POST with the chart as the body");
+        }
+        String relative = params.get("path");
+        if (relative == null) {
+            throw new RequestException(400, "Missing ?path= (or POST the chart as the body)");
+        }
+        if (songsRoot == null) {
+            throw new RequestException(403, "Charts can only be uploaded; the server was started without --root");
+        }
+        Path chartFile = songsRoot.resolve(relative).normalize();
+        if (!chartFile.startsWith(songsRoot)) {
+            throw new RequestException(403, "Path is outside the songs root: " + relative);
+        }
+        if (!Files.isRegularFile(chartFile)) {
+            throw new NoSuchFileException(relative);
+        }
+        // A symlink under the root can still point anywhere, so compare where both really are.
+        Path realFile = chartFile.toRealPath();
+        if (!realFile.startsWith(songsRoot.toRealPath())) {
+            throw new RequestException(403, "Path is outside the songs root: " + relative);
+        }
+        return ChartParser.parseChart(realFile.toString(), track);
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            body.write(buffer, 0, read);
+            if (body.size() > MAX_UPLOAD_BYTES) {
+                throw new RequestException(413, "Charts are limited to " + (MAX_UPLOAD_BYTES >> 20) + " MB");
+            }
+        }
+        if (body.size() == 0) {
+            throw new RequestException(400, "Empty request body");
+        }
+        return body.toByteArray();
+    }
+
+    private static Map<String, String> queryParams(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "true" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        String json = "{\"error\": " + BatchOptimizer.jsonString(String.valueOf(message)) + "}";
+        respond(exchange, status, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type",
+                contentType.startsWith("application/json") ? contentType + "; charset=utf-8" : contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // An error answered with a specific HTTP status.
+    private static class RequestException extends UncheckedIOException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message, new IOException(message));
+            this.status = status;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path songsRoot = null;
+        Path tileCacheDir = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--root") && i + 1 < args.length) {
+                songsRoot = Paths.get(args[++i]);
+            } else if (args[i].equals("--tile-cache") && i + 1 < args.length) {
+                tileCacheDir = Paths.get(args[++i]);
+            } else {
+                System.out.println("Usage: java ghopt.cli.OptimizerServer [--port N] [--threads N] [--root SONGS_DIR] [--tile-cache DIR]");
+                System.out.println("Example: curl --data-binary @notes.chart 'localhost:8080/optimize?rules=gh'");
+                return;
+            }
+        }
+
+        OptimizerServer server = new OptimizerServer(port, threads, songsRoot, tileCacheDir);
+        server.start();
+        System.out.println("Serving on http://127.0.0.1:" + server.port() + " with " + threads + " threads" +
+                (songsRoot != null ? ", charts under " + songsRoot : ", uploads only"));
+    }
+}
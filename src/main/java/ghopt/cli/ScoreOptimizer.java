@@ -0,0 +1,107 @@
+package ghopt.cli;
+
+import ghopt.core.io.ChartParser;
+import ghopt.core.io.ColumnarChartData;
+import ghopt.core.io.ExtendedOptimizer;
+import ghopt.core.io.Metrics;
+import ghopt.core.io.PathTrace;
+import ghopt.core.io.Rules;
+import ghopt.core.io.StarPowerOptimizer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Prints the optimal path for one chart and nothing else, for scripts that call the CLI once per
+ * song. Nothing on this path renders, so AWT and ImageIO are never loaded; together with the
+ * class data sharing archive the build writes, a run is mostly JVM startup.
+ */
+public class ScoreOptimizer {
+
+    private static void printUsage() {
+        System.out.println("Usage: java ghopt.cli.ScoreOptimizer <chart-file> [--rules clonehero|guitarhero] [--extended] [--track ExpertSingle] [--json] [--stats] [--trace path.jsonl|path.bin]");
+        System.out.println("Example: java ghopt.cli.ScoreOptimizer resources/Song/notes.chart --json");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args[0].startsWith("--")) {
+            printUsage();
+            return;
+        }
+
+        String chartFile = args[0];
+        Rules rules = Rules.CLONE_HERO;
+        boolean extended = false;
+        ChartParser.Track track = ChartParser.Track.EXPERT_GUITAR;
+        boolean json = false;
+        boolean stats = false;
+        Path traceFile = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--rules") && i + 1 < args.length) {
+                rules = Rules.named(args[++i]);
+            } else if (args[i].equals("--extended")) {
+                extended = true;
+            } else if (args[i].equals("--track") && i + 1 < args.length) {
+                track = ChartParser.Track.named(args[++i]);
+            } else if (args[i].equals("--json")) {
+                json = true;
+            } else if (args[i].equals("--stats")) {
+                stats = true;
+            } else if (args[i].equals("--trace") && i + 1 < args.length) {
+                traceFile = Paths.get(args[++i]);
+            } else {
+                // Scripts would otherwise get a path scored under options they never asked for.
+                System.out.println("Unknown option or missing value: " + args[i]);
+                printUsage();
+                return;
+            }
+        }
+
+        Metrics.Collector collector = stats ? Metrics.collect() : null;
+        ColumnarChartData chartData = ColumnarChartData.from(ChartParser.parseChart(chartFile, track));
+        StarPowerOptimizer.OptimalPath path = extended
+                ? ExtendedOptimizer.findOptimalPath(chartData, rules)
+                : StarPowerOptimizer.findOptimalPath(chartData, rules);
+        long baseScore = StarPowerOptimizer.calculateBaseScore(chartData, rules);
+        if (traceFile != null) {
+            writeTrace(StarPowerOptimizer.trace(chartData, rules, path.activationTimes), traceFile);
+        }
+
+        if (json) {
+            System.out.println("{\"chartFile\": " + BatchOptimizer.jsonString(chartFile) +
+                    ", \"track\": " + BatchOptimizer.jsonString(track.toString()) +
+                    ", \"rules\": " + BatchOptimizer.jsonString(rules.name) +
+                    ", \"extended\": " + extended +
+                    ", \"noteCount\": " + chartData.noteCount +
+                    ", \"baseScore\": " + baseScore +
+                    ", \"optimalScore\": " + path.totalScore +
+                    ", \"activationTimes\": " + path.activationTimes +
+                    (collector != null ? ", \"phases\": " + BatchOptimizer.statsJson(collector.samples()) : "") + "}");
+        } else {
+            System.out.println("Base Score (no star power): " + baseScore);
+            System.out.println("Optimal Score: " + path.totalScore);
+            System.out.println("Activation Times: " + path.activationTimes);
+            if (collector != null) {
+                System.out.println("Stats: " + BatchOptimizer.statsJson(collector.samples()));
+            }
+        }
+    }
+
+    /** JSON lines, or the binary records for a {@code .bin} file. */
+    static void writeTrace(PathTrace trace, Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".bin")) {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                trace.writeBinary(out);
+            }
+        } else {
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                trace.writeJsonLines(out);
+            }
+        }
+    }
+}
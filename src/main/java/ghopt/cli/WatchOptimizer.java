@@ -0,0 +1,108 @@
+package ghopt.cli;
+
+import ghopt.core.io.ChartParser;
+import ghopt.core.io.ColumnarChartData;
+import ghopt.core.io.IncrementalOptimizer;
+import ghopt.core.io.Rules;
+import ghopt.core.io.StarPowerOptimizer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Re-optimizes a chart every time it is saved, for chart authors iterating on an edit. Each save
+ * only re-solves the groups around the change (see {@link IncrementalOptimizer}), and the tables
+ * are brought back up to date while waiting for the next save.
+ */
+public class WatchOptimizer {
+
+    // Editors often save in several writes (or write a temp file and rename it); wait for them to settle.
+    private static final long SETTLE_MILLIS = 50;
+
+    private final Path chartFile;
+    private final IncrementalOptimizer optimizer;
+    private Long previousScore;
+
+    public WatchOptimizer(Path chartFile) {
+        this(chartFile, Rules.CLONE_HERO);
+    }
+
+    public WatchOptimizer(Path chartFile, Rules rules) {
+        this.chartFile = chartFile.toAbsolutePath();
+        this.optimizer = new IncrementalOptimizer(rules);
+    }
+
+    /** Optimizes the chart as it is now and prints the result; parse errors are reported, not thrown. */
+    public void optimizeOnce() {
+        try {
+            long start = System.nanoTime();
+            ColumnarChartData chartData = ColumnarChartData.from(ChartParser.parseChart(chartFile.toString()));
+            long parsed = System.nanoTime();
+            StarPowerOptimizer.OptimalPath path = optimizer.update(chartData);
+            long solved = System.nanoTime();
+
+            String change = previousScore == null ? "" : String.format(" (%+d)", path.totalScore - previousScore);
+            previousScore = path.totalScore;
+            System.out.println("Score " + path.totalScore + change + " | activations " + path.activationTimes);
+            System.out.printf("  parse %.1f ms, solve %.1f ms, %d of %d groups re-solved%n",
+                    (parsed - start) / 1e6, (solved - parsed) / 1e6,
+                    optimizer.lastRecomputedRows(), optimizer.groupCount());
+
+            optimizer.heal();
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    /** Blocks, re-optimizing after every change to the chart file, until interrupted. */
+    public void watch() throws IOException, InterruptedException {
+        try (WatchService watcher = chartFile.getFileSystem().newWatchService()) {
+            chartFile.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            System.out.println("Watching " + chartFile + " (Ctrl+C to stop)");
+
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (chartFile.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Error: " + chartFile.getParent() + " is no longer accessible");
+                    return;
+                }
+                if (!changed) {
+                    continue;
+                }
+
+                Thread.sleep(SETTLE_MILLIS);
+                for (WatchKey pending = watcher.poll(); pending != null; pending = watcher.poll()) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                optimizeOnce();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1 && !(args.length == 3 && args[1].equals("--rules"))) {
+            System.out.println("Usage: java ghopt.cli.WatchOptimizer <chart-file> [--rules clonehero|guitarhero]");
+            System.out.println("Example: java ghopt.cli.WatchOptimizer resources/Song/notes.chart");
+            return;
+        }
+
+        Rules rules = args.length == 3 ? Rules.named(args[2]) : Rules.CLONE_HERO;
+        WatchOptimizer watcher = new WatchOptimizer(Paths.get(args[0]), rules);
+        watcher.optimizeOnce();
+        watcher.watch();
+    }
+}
@@ -0,0 +1,257 @@
+package ghopt.core.io;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of parsed charts in a compact versioned binary format.
+ *
+ * Each chart has one entry, named after its absolute path. The entry records the chart's size
+ * and last-modified time, so editing or replacing the chart invalidates it; an unreadable or
+ * outdated entry is re-parsed and overwritten in place, and the directory holds at most one
+ * entry per chart. It can be deleted at any time.
+ */
+public class ChartCache {
+
+    private static final int MAGIC = 0x47484F43; // "GHOC"
+    // Bump whenever the layout below or the parser's output for the same file changes.
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+    private static final String ALL_TRACKS_SUFFIX = "|all-tracks";
+
+    private final Path cacheDir;
+
+    public ChartCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    /** Returns the chart from the cache, parsing and storing it first if needed. */
+    public ColumnarChartData load(Path chartFile) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(chartFile, BasicFileAttributes.class);
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+        Path entry = cacheDir.resolve(entryName(chartFile));
+
+        if (Files.isRegularFile(entry)) {
+            ColumnarChartData cached = read(ByteBuffer.wrap(Files.readAllBytes(entry)), size, modified);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        ColumnarChartData data = ColumnarChartData.from(ChartParser.parseChart(chartFile.toString()));
+        store(entry, write(data, size, modified));
+        return data;
+    }
+
+    /**
+     * Every track with notes, as {@link ChartParser#parseAllTracks} returns them, from one entry
+     * per chart that is kept apart from the expert guitar entry {@link #load} uses.
+     */
+    public Map<ChartParser.Track, ColumnarChartData> loadAllTracks(Path chartFile) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(chartFile, BasicFileAttributes.class);
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+        Path entry = cacheDir.resolve(entryName(chartFile, ALL_TRACKS_SUFFIX));
+
+        if (Files.isRegularFile(entry)) {
+            Map<ChartParser.Track, ColumnarChartData> cached =
+                    readTracks(ByteBuffer.wrap(Files.readAllBytes(entry)), size, modified);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Map<ChartParser.Track, ColumnarChartData> tracks = new LinkedHashMap<>();
+        for (Map.Entry<ChartParser.Track, ChartParser.ChartData> track : ChartParser.parseAllTracks(chartFile.toString()).entrySet()) {
+            tracks.put(track.getKey(), ColumnarChartData.from(track.getValue()));
+        }
+        store(entry, writeTracks(tracks, size, modified));
+        return tracks;
+    }
+
+    private void store(Path entry, ByteBuffer bytes) throws IOException {
+        Files.createDirectories(cacheDir);
+        // Write to a temp file and rename so concurrent readers never see a partial entry.
+        Path temp = Files.createTempFile(cacheDir, "chart", ".tmp");
+        try {
+            Files.write(temp, bytes.array());
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static ByteBuffer write(ColumnarChartData data, long sourceSize, long sourceModified) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + bodyBytes(data));
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(sourceSize).putLong(sourceModified);
+        putBody(buffer, data);
+        buffer.flip();
+        return buffer;
+    }
+
+    // The header, a track count, then each track's index and chart.
+    static ByteBuffer writeTracks(Map<ChartParser.Track, ColumnarChartData> tracks, long sourceSize, long sourceModified) {
+        int bytes = HEADER_BYTES + 4;
+        for (ColumnarChartData data : tracks.values()) {
+            bytes += 4 + bodyBytes(data);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(sourceSize).putLong(sourceModified);
+        buffer.putInt(tracks.size());
+        for (Map.Entry<ChartParser.Track, ColumnarChartData> track : tracks.entrySet()) {
+            buffer.putInt(track.getKey().index());
+            putBody(buffer, track.getValue());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int bodyBytes(ColumnarChartData data) {
+        int ints = 1 + 1 + 3 * data.noteCount
+                + 1 + 2 * data.phraseCount
+                + 1 + 2 * data.tempoCount
+                + 1 + 3 * data.timeSignatureCount;
+        return ints * 4 + data.noteCount;
+    }
+
+    private static void putBody(ByteBuffer buffer, ColumnarChartData data) {
+        buffer.putInt(data.resolution);
+        buffer.putInt(data.noteCount);
+        putInts(buffer, data.noteTimes, data.noteCount);
+        putInts(buffer, data.noteTypes, data.noteCount);
+        putInts(buffer, data.noteDurations, data.noteCount);
+        buffer.put(data.noteFlags, 0, data.noteCount);
+
+        buffer.putInt(data.phraseCount);
+        putInts(buffer, data.phraseStarts, data.phraseCount);
+        putInts(buffer, data.phraseEnds, data.phraseCount);
+
+        buffer.putInt(data.tempoCount);
+        putInts(buffer, data.tempoTimes, data.tempoCount);
+        putInts(buffer, data.tempoMicrosecondsPerQuarter, data.tempoCount);
+
+        buffer.putInt(data.timeSignatureCount);
+        putInts(buffer, data.timeSignatureTimes, data.timeSignatureCount);
+        putInts(buffer, data.timeSignatureNumerators, data.timeSignatureCount);
+        putInts(buffer, data.timeSignatureDenominators, data.timeSignatureCount);
+    }
+
+    /** Decodes an entry, or returns null if it is corrupt, outdated or for a different file version. */
+    static ColumnarChartData read(ByteBuffer buffer, long sourceSize, long sourceModified) {
+        try {
+            if (!readHeader(buffer, sourceSize, sourceModified)) {
+                return null;
+            }
+            ColumnarChartData data = getBody(buffer);
+            return buffer.hasRemaining() ? null : data;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    /** As {@link #read}, for an entry written by {@link #writeTracks}. */
+    static Map<ChartParser.Track, ColumnarChartData> readTracks(ByteBuffer buffer, long sourceSize, long sourceModified) {
+        try {
+            if (!readHeader(buffer, sourceSize, sourceModified)) {
+                return null;
+            }
+            ChartParser.Track[] all = ChartParser.Track.all();
+            int count = buffer.getInt();
+            Map<ChartParser.Track, ColumnarChartData> tracks = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                int index = buffer.getInt();
+                if (index < 0 || index >= all.length) {
+                    return null;
+                }
+                tracks.put(all[index], getBody(buffer));
+            }
+            return buffer.hasRemaining() ? null : tracks;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static boolean readHeader(ByteBuffer buffer, long sourceSize, long sourceModified) {
+        return buffer.getInt() == MAGIC && buffer.getInt() == FORMAT_VERSION
+                && buffer.getLong() == sourceSize && buffer.getLong() == sourceModified;
+    }
+
+    private static ColumnarChartData getBody(ByteBuffer buffer) {
+        ColumnarChartData data = new ColumnarChartData();
+        data.resolution = buffer.getInt();
+        data.noteCount = buffer.getInt();
+        data.noteTimes = getInts(buffer, data.noteCount);
+        data.noteTypes = getInts(buffer, data.noteCount);
+        data.noteDurations = getInts(buffer, data.noteCount);
+        data.noteFlags = new byte[data.noteCount];
+        buffer.get(data.noteFlags);
+
+        data.phraseCount = buffer.getInt();
+        data.phraseStarts = getInts(buffer, data.phraseCount);
+        data.phraseEnds = getInts(buffer, data.phraseCount);
+
+        data.tempoCount = buffer.getInt();
+        data.tempoTimes = getInts(buffer, data.tempoCount);
+        data.tempoMicrosecondsPerQuarter = getInts(buffer, data.tempoCount);
+
+        data.timeSignatureCount = buffer.getInt();
+        data.timeSignatureTimes = getInts(buffer, data.timeSignatureCount);
+        data.timeSignatureNumerators = getInts(buffer, data.timeSignatureCount);
+        data.timeSignatureDenominators = getInts(buffer, data.timeSignatureCount);
+        return data;
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values, int count) {
+        buffer.asIntBuffer().put(values, 0, count);
+        buffer.position(buffer.position() + count * 4);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        if (count * 4L > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    // The size and modification time are checked against the entry's header instead of being
+    // part of the name, so a changed chart replaces its entry rather than leaving it behind.
+    private static String entryName(Path chartFile) {
+        return entryName(chartFile, "");
+    }
+
+    private static String entryName(Path chartFile, String suffix) {
+        String key = chartFile.toAbsolutePath().normalize() + suffix;
+        return sha256Hex(key.getBytes(StandardCharsets.UTF_8)) + ".bin";
+    }
+
+    static String sha256Hex(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
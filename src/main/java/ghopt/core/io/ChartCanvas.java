@@ -0,0 +1,108 @@
+package ghopt.core.io;
+
+import java.awt.*;
+
+/**
+ * The drawing operations {@link ChartRenderer} uses, so the same layer drawing code can target
+ * a raster ({@link GraphicsCanvas}, or the sprite-based {@link RasterCanvas}) or a vector
+ * document ({@link SvgCanvas}).
+ *
+ * Coordinates are whole-image pixels. Outlines take their stroke width with each call, which
+ * leaves fills and 1 px lines independent of whatever was stroked before.
+ */
+interface ChartCanvas {
+
+    void setColor(Color color);
+
+    void fillRect(int x, int y, int width, int height);
+
+    void drawRect(int x, int y, int width, int height, float strokeWidth);
+
+    /** A 1 px line. */
+    void drawLine(int x1, int y1, int x2, int y2);
+
+    void drawString(String text, int x, int y);
+
+    void fillOval(int x, int y, int width, int height);
+
+    void fill(Shape shape);
+
+    void draw(Shape shape, float strokeWidth);
+
+    /** A regular note: a filled circle of diameter {@code size} with its top-left corner at (x, y). */
+    default void noteHead(int x, int y, int size, Color color) {
+        setColor(color);
+        fillOval(x, y, size, size);
+    }
+
+    /** A star power note: a five-point star around (cx, cy) with a 2 px outline. */
+    default void starNote(int cx, int cy, int outerRadius, int innerRadius, Color fill, Color outline) {
+        Shape star = ChartRenderer.createStar(cx, cy, outerRadius, innerRadius, 5);
+        setColor(fill);
+        fill(star);
+        setColor(outline);
+        draw(star, 2);
+    }
+
+    /** Draws onto a Graphics2D, which may already be transformed and clipped by the caller. */
+    class GraphicsCanvas implements ChartCanvas {
+        private static final Stroke DEFAULT_STROKE = new BasicStroke();
+        private static final Stroke[] STROKES = {DEFAULT_STROKE, DEFAULT_STROKE, new BasicStroke(2), new BasicStroke(3)};
+
+        private final Graphics2D g;
+
+        GraphicsCanvas(Graphics2D g) {
+            this.g = g;
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+
+        @Override
+        public void setColor(Color color) {
+            g.setColor(color);
+        }
+
+        @Override
+        public void fillRect(int x, int y, int width, int height) {
+            g.fillRect(x, y, width, height);
+        }
+
+        @Override
+        public void drawRect(int x, int y, int width, int height, float strokeWidth) {
+            g.setStroke(stroke(strokeWidth));
+            g.drawRect(x, y, width, height);
+            g.setStroke(DEFAULT_STROKE);
+        }
+
+        @Override
+        public void drawLine(int x1, int y1, int x2, int y2) {
+            g.drawLine(x1, y1, x2, y2);
+        }
+
+        @Override
+        public void drawString(String text, int x, int y) {
+            g.drawString(text, x, y);
+        }
+
+        @Override
+        public void fillOval(int x, int y, int width, int height) {
+            g.fillOval(x, y, width, height);
+        }
+
+        @Override
+        public void fill(Shape shape) {
+            g.fill(shape);
+        }
+
+        @Override
+        public void draw(Shape shape, float strokeWidth) {
+            g.setStroke(stroke(strokeWidth));
+            g.draw(shape);
+            g.setStroke(DEFAULT_STROKE);
+        }
+
+        private static Stroke stroke(float width) {
+            int w = (int) width;
+            return w == width && w >= 1 && w < STROKES.length ? STROKES[w] : new BasicStroke(width);
+        }
+    }
+}
@@ -1,16 +1,14 @@
 package ghopt.core.io;
  
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.nio.charset.StandardCharsets;
-import javax.imageio.ImageIO;
-import javax.sound.midi.*;
-import java.awt.geom.GeneralPath;
+import java.nio.file.Paths;
 
 public class ChartParser {
 
@@ -101,6 +99,97 @@ public class ChartParser {
         }
     }
 
+    /** The 5-fret parts a chart can have, by their .chart section suffix. */
+    public enum Instrument {
+        GUITAR("Single"),
+        GUITAR_COOP("DoubleGuitar"),
+        RHYTHM("DoubleRhythm"),
+        BASS("DoubleBass"),
+        KEYS("Keyboard");
+
+        public final String sectionSuffix;
+
+        Instrument(String sectionSuffix) {
+            this.sectionSuffix = sectionSuffix;
+        }
+    }
+
+    public enum Difficulty {
+        EASY("Easy", 60),
+        MEDIUM("Medium", 72),
+        HARD("Hard", 84),
+        EXPERT("Expert", 96);
+
+        public final String sectionPrefix;
+        final int lowestMidiGem; // green; the other four frets follow
+
+        Difficulty(String sectionPrefix, int lowestMidiGem) {
+            this.sectionPrefix = sectionPrefix;
+            this.lowestMidiGem = lowestMidiGem;
+        }
+    }
+
+    /** One instrument at one difficulty, named like its .chart section ("ExpertSingle"). */
+    public static final class Track {
+        private static final Track[] ALL = new Track[Instrument.values().length * Difficulty.values().length];
+        static {
+            for (Instrument instrument : Instrument.values()) {
+                for (Difficulty difficulty : Difficulty.values()) {
+                    ALL[index(instrument, difficulty)] = new Track(instrument, difficulty);
+                }
+            }
+        }
+
+        public static final Track EXPERT_GUITAR = of(Instrument.GUITAR, Difficulty.EXPERT);
+
+        public final Instrument instrument;
+        public final Difficulty difficulty;
+
+        private Track(Instrument instrument, Difficulty difficulty) {
+            this.instrument = instrument;
+            this.difficulty = difficulty;
+        }
+
+        public static Track of(Instrument instrument, Difficulty difficulty) {
+            return ALL[index(instrument, difficulty)];
+        }
+
+        public static Track named(String name) {
+            Track track = forSection(name);
+            if (track == null) {
+                throw new IllegalArgumentException("Unknown track: " + name + " (expected e.g. ExpertSingle or HardDoubleBass)");
+            }
+            return track;
+        }
+
+        // Tracks in a fixed order: by instrument, then from easy to expert.
+        static Track[] all() {
+            return ALL.clone();
+        }
+
+        private static Track forSection(String name) {
+            for (Track track : ALL) {
+                if (track.toString().equalsIgnoreCase(name)) {
+                    return track;
+                }
+            }
+            return null;
+        }
+
+        private static int index(Instrument instrument, Difficulty difficulty) {
+            return instrument.ordinal() * Difficulty.values().length + difficulty.ordinal();
+        }
+
+        int index() {
+            return index(instrument, difficulty);
+        }
+
+        @Override
+        public String toString() {
+            return difficulty.sectionPrefix + instrument.sectionSuffix;
+        }
+    }
+
     public static class ChartData {
         public List<Note> notes = new ArrayList<>();
         public List<StarPowerPhrase> starPowerPhrases = new ArrayList<>();
@@ -110,209 +199,316 @@ public class ChartParser {
     }
 
     public static ChartData parseChart(String filePath) throws IOException {
-        if (filePath.toLowerCase().endsWith(".mid")) {
-            return parseMidiChart(filePath);
+        return parseChart(filePath, Track.EXPERT_GUITAR);
+    }
+
+    /** One track of the chart; a chart without that track yields its tempo map and no notes. */
+    public static ChartData parseChart(String filePath, Track track) throws IOException {
+        ChartData[] views = parse(filePath, only(track));
+        return views[track.index()] != null ? views[track.index()] : views[SYNC];
+    }
+
+    /**
+     * One track of a chart already in memory, such as an upload. A .mid is told apart from a
+     * .chart by its header.
+     */
+    public static ChartData parseChart(ByteBuffer bytes, Track track) throws IOException {
+        boolean midi = bytes.limit() >= 4 && bytes.get(0) == 'M' && bytes.get(1) == 'T' &&
+                bytes.get(2) == 'h' && bytes.get(3) == 'd';
+        long start = System.nanoTime();
+        ChartData[] views = midi
+                ? parseMidiChart(SmfReader.of(bytes), only(track))
+                : parseChartText(ChartText.of(bytes), only(track));
+        if (Metrics.enabled()) {
+            Metrics.parsed("(upload)", System.nanoTime() - start, bytes.limit(), noteCount(views));
         }
+        return views[track.index()] != null ? views[track.index()] : views[SYNC];
+    }
 
-        ChartData chartData = new ChartData();
+    /**
+     * Every track that has notes, split out of the file in one pass. The views share the file's
+     * tempo and time signature lists, and for .mid files each instrument's star power phrases.
+     */
+    public static Map<Track, ChartData> parseAllTracks(String filePath) throws IOException {
+        ChartData[] views = parse(filePath, null);
+        Map<Track, ChartData> tracks = new LinkedHashMap<>();
+        for (Track track : Track.all()) {
+            ChartData view = views[track.index()];
+            if (view != null && !view.notes.isEmpty()) {
+                tracks.put(track, view);
+            }
+        }
+        return tracks;
+    }
+
+    // parse() returns one slot per track, indexed by Track.index(), plus this one holding only the
+    // sync data; slots for tracks that are absent or not wanted are null.
+    private static final int SYNC = Track.all().length;
+
+    private static boolean[] only(Track track) {
+        boolean[] wanted = new boolean[SYNC];
+        wanted[track.index()] = true;
+        return wanted;
+    }
+
+    /** {@code wanted} is indexed by Track.index(); null reads every track. */
+    private static ChartData[] parse(String filePath, boolean[] wanted) throws IOException {
+        long start = System.nanoTime();
+        ChartData[] views = filePath.toLowerCase().endsWith(".mid")
+                ? parseMidiChart(SmfReader.open(Paths.get(filePath)), wanted)
+                : parseChartText(ChartText.read(Paths.get(filePath)), wanted);
+        if (Metrics.enabled()) {
+            Metrics.parsed(filePath, System.nanoTime() - start, Files.size(Paths.get(filePath)), noteCount(views));
+        }
+        return views;
+    }
+
+    private static int noteCount(ChartData[] views) {
+        int notes = 0;
+        for (ChartData view : views) {
+            notes += view != null ? view.notes.size() : 0;
+        }
+        return notes;
+    }
+
+    static ChartData parseChartText(CharSequence text) {
+        ChartData[] views = parseChartText(text, only(Track.EXPERT_GUITAR));
+        ChartData expert = views[Track.EXPERT_GUITAR.index()];
+        return expert != null ? expert : views[SYNC];
+    }
+
+    private static ChartData[] parseChartText(CharSequence text, boolean[] wanted) {
+        ChartData[] views = new ChartData[SYNC + 1];
+        ChartData sync = views[SYNC] = new ChartData();
         int resolution = 480;
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean inExpertSingle = false;
-            boolean inSongSection = false;
-            boolean inSyncTrack = false;
-
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-
-                if (line.equals("[Song]")) {
-                    inSongSection = true;
-                    inSyncTrack = false;
-                } else if (line.equals("[ExpertSingle]")) {
-                    inExpertSingle = true;
-                    inSyncTrack = false;
-                } else if (line.equals("[SyncTrack]")) {
-                    inSyncTrack = true;
-                    inExpertSingle = false;
-                    inSongSection = false;
-                } else if (line.startsWith("[")) {
-                    inExpertSingle = false;
-                    inSongSection = false;
-                    inSyncTrack = false;
+        ChartTokenizer tokenizer = new ChartTokenizer(text);
+        ChartData current = null; // the track section being read, if it is wanted
+        boolean inSongSection = false;
+        boolean inSyncTrack = false;
+
+        while (tokenizer.nextLine()) {
+            if (tokenizer.lineEquals("[Song]")) {
+                inSongSection = true;
+                inSyncTrack = false;
+                current = null;
+            } else if (tokenizer.lineEquals("[SyncTrack]")) {
+                inSyncTrack = true;
+                inSongSection = false;
+                current = null;
+            } else if (tokenizer.lineStartsWith("[")) {
+                inSongSection = false;
+                inSyncTrack = false;
+                current = null;
+                String line = tokenizer.line();
+                Track track = line.endsWith("]") ? Track.forSection(line.substring(1, line.length() - 1)) : null;
+                if (track != null && (wanted == null || wanted[track.index()])) {
+                    if (views[track.index()] == null) {
+                        views[track.index()] = new ChartData();
+                    }
+                    current = views[track.index()];
                 }
+            }
 
-                if (inSongSection && line.startsWith("Resolution")) {
-                    String[] kv = line.split("=");
-                    if (kv.length == 2) {
-                        try {
-                            resolution = Integer.parseInt(kv[1].trim());
-                        } catch (NumberFormatException ignored) {}
-                    }
+            if (inSongSection && tokenizer.lineStartsWith("Resolution")) {
+                if (tokenizer.splitKeyValue()) {
+                    try {
+                        resolution = tokenizer.valueInt();
+                    } catch (NumberFormatException ignored) {}
                 }
+            }
+
+            if (inSyncTrack && tokenizer.splitKeyValue()) {
+                int time = tokenizer.keyInt();
 
-                if (inSyncTrack) {
-                    String[] parts = line.split("=");
-                    if (parts.length == 2) {
-                        int time = Integer.parseInt(parts[0].trim());
-                        String[] syncData = parts[1].trim().split(" ");
-
-                        if (syncData.length >= 2) {
-                            if (syncData[0].equals("B")) {
-                                try {
-                                    int mpq = Integer.parseInt(syncData[1]);
-                                    chartData.tempoEvents.add(new TempoEvent(time, mpq));
-                                } catch (NumberFormatException ignored) {}
-                            } else if (syncData[0].equals("TS")) {
-                                try {
-                                    int numerator = Integer.parseInt(syncData[1]);
-                                    int denominator = syncData.length >= 3
-                                            ? Integer.parseInt(syncData[2])
-                                            : 4;
-                                    chartData.timeSignatures.add(new TimeSignatureEvent(time, numerator, denominator));
-                                } catch (NumberFormatException ignored) {}
+                if (tokenizer.tokenCount() >= 2) {
+                    if (tokenizer.tokenEquals(0, "B")) {
+                        try {
+                            // .chart tempos are beats per minute times 1000.
+                            int milliBpm = tokenizer.tokenInt(1);
+                            if (milliBpm > 0) {
+                                int mpq = (int) Math.round(60_000_000_000.0 / milliBpm);
+                                sync.tempoEvents.add(new TempoEvent(time, mpq));
                             }
-                        }
+                        } catch (NumberFormatException ignored) {}
+                    } else if (tokenizer.tokenEquals(0, "TS")) {
+                        try {
+                            // The optional second value is the denominator's power of two, as in MIDI:
+                            // "TS 6 3" is 6/8.
+                            int numerator = tokenizer.tokenInt(1);
+                            int exponent = tokenizer.tokenCount() >= 3 ? tokenizer.tokenInt(2) : 2;
+                            if (exponent >= 0 && exponent < 8) {
+                                sync.timeSignatures.add(new TimeSignatureEvent(time, numerator, 1 << exponent));
+                            }
+                        } catch (NumberFormatException ignored) {}
                     }
                 }
+            }
 
-                if (inExpertSingle) {
-                    String[] parts = line.split("=");
-                    if (parts.length == 2) {
-                        int time = Integer.parseInt(parts[0].trim());
-                        String[] noteData = parts[1].trim().split(" ");
-
-                        if (noteData.length >= 3) {
-                            if (noteData[0].equals("N")) {
-                                int type = Integer.parseInt(noteData[1]);
-                                int duration = Integer.parseInt(noteData[2]);
-
-                                if (type == 5 || type == 6) {
-                                    for (int i = chartData.notes.size() - 1; i >= 0; i--) {
-                                        Note prev = chartData.notes.get(i);
-                                        if (prev.time <= time) {
-                                            if (type == 5) prev.forced = true;
-                                            else prev.tap = true;
-                                            break;
-                                        }
-                                    }
-                                } else {
-                                    chartData.notes.add(new Note(time, type, duration));
+            if (current != null && tokenizer.splitKeyValue()) {
+                int time = tokenizer.keyInt();
+
+                if (tokenizer.tokenCount() >= 3) {
+                    if (tokenizer.tokenEquals(0, "N")) {
+                        int type = tokenizer.tokenInt(1);
+                        int duration = tokenizer.tokenInt(2);
+
+                        if (type == 5 || type == 6) {
+                            for (int i = current.notes.size() - 1; i >= 0; i--) {
+                                Note prev = current.notes.get(i);
+                                if (prev.time <= time) {
+                                    if (type == 5) prev.forced = true;
+                                    else prev.tap = true;
+                                    break;
                                 }
-                            } else if (noteData[0].equals("S")) {
-                                int duration = Integer.parseInt(noteData[2]);
-                                chartData.starPowerPhrases.add(new StarPowerPhrase(time, time + duration));
                             }
+                        } else {
+                            current.notes.add(new Note(time, type, duration));
                         }
+                    } else if (tokenizer.tokenEquals(0, "S")) {
+                        int duration = tokenizer.tokenInt(2);
+                        current.starPowerPhrases.add(new StarPowerPhrase(time, time + duration));
                     }
                 }
             }
         }
-        chartData.resolution = resolution;
-        chartData.tempoEvents.sort((a, b) -> Integer.compare(a.time, b.time));
-        chartData.timeSignatures.sort((a, b) -> Integer.compare(a.time, b.time));
-        if (chartData.timeSignatures.isEmpty()) {
-            chartData.timeSignatures.add(new TimeSignatureEvent(0, 4, 4));
-        } else if (chartData.timeSignatures.get(0).time != 0) {
-            chartData.timeSignatures.add(0, new TimeSignatureEvent(0, 4, 4));
-        }
-        return chartData;
+        sync.resolution = resolution;
+        shareSyncData(views);
+        return views;
     }
 
-    private static ChartData parseMidiChart(String filePath) throws IOException {
-        ChartData chartData = new ChartData();
-        try {
-            Sequence sequence = MidiSystem.getSequence(new File(filePath));
-            chartData.resolution = sequence.getResolution();
-
-            Track[] tracks = sequence.getTracks();
-            for (Track track : tracks) {
-                String trackName = getTrackName(track);
-                boolean isGuitarTrack = isGuitarTrackName(trackName);
-                Map<Integer, Integer> activeNotes = new HashMap<>();
-
-                for (int i = 0; i < track.size(); i++) {
-                    MidiEvent event = track.get(i);
-                    MidiMessage message = event.getMessage();
-
-                    if (message instanceof MetaMessage) {
-                        MetaMessage meta = (MetaMessage) message;
-                        int type = meta.getType();
-                        byte[] data = meta.getData();
-
-                        if (type == 0x51 && data.length == 3) {
-                            int mpq = ((data[0] & 0xFF) << 16) | ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
-                            chartData.tempoEvents.add(new TempoEvent((int) event.getTick(), mpq));
-                        } else if (type == 0x58 && data.length >= 2) {
-                            int numerator = data[0] & 0xFF;
-                            int denominator = 1 << (data[1] & 0xFF);
-                            chartData.timeSignatures.add(new TimeSignatureEvent((int) event.getTick(), numerator, denominator));
+    private static ChartData[] parseMidiChart(SmfReader reader, boolean[] wanted) throws IOException {
+        ChartData[] views = new ChartData[SYNC + 1];
+        ChartData sync = views[SYNC] = new ChartData();
+        sync.resolution = reader.resolution();
+        Difficulty[] difficulties = Difficulty.values();
+        List<List<StarPowerPhrase>> phrases = new ArrayList<>();
+        for (int i = 0; i < Instrument.values().length; i++) {
+            phrases.add(new ArrayList<>());
+        }
+
+        while (reader.nextTrack()) {
+            Instrument instrument = instrumentForTrackName(reader.trackName());
+            // One track holds every difficulty of its instrument, each in its own octave.
+            ChartData[] byDifficulty = new ChartData[difficulties.length];
+            if (instrument != null) {
+                for (Difficulty difficulty : difficulties) {
+                    Track track = Track.of(instrument, difficulty);
+                    if (wanted == null || wanted[track.index()]) {
+                        if (views[track.index()] == null) {
+                            views[track.index()] = new ChartData();
                         }
-                    } else if (message instanceof ShortMessage && isGuitarTrack) {
-                        ShortMessage sm = (ShortMessage) message;
-                        int cmd = sm.getCommand();
-                        int note = sm.getData1();
-                        int velocity = sm.getData2();
-                        int tick = (int) event.getTick();
-
-                        boolean noteOn = cmd == ShortMessage.NOTE_ON && velocity > 0;
-                        boolean noteOff = cmd == ShortMessage.NOTE_OFF || (cmd == ShortMessage.NOTE_ON && velocity == 0);
-
-                        if (noteOn) {
-                            activeNotes.put(note, tick);
-                        } else if (noteOff && activeNotes.containsKey(note)) {
-                            int start = activeNotes.remove(note);
-                            int duration = Math.max(0, tick - start);
-
-                            if (note >= 96 && note <= 100) {
-                                int type = note - 96;
-                                chartData.notes.add(new Note(start, type, duration));
-                            } else if (note == 116) {
-                                chartData.starPowerPhrases.add(new StarPowerPhrase(start, start + duration));
-                            } else if (note == 106) {
-                                chartData.notes.add(new Note(start, 7, duration));
+                        byDifficulty[difficulty.ordinal()] = views[track.index()];
+                    }
+                }
+            }
+            boolean isWantedTrack = false;
+            for (ChartData view : byDifficulty) {
+                isWantedTrack |= view != null;
+            }
+            // The tempo map lives in the first track; other unwanted tracks are skipped undecoded.
+            if (!isWantedTrack && reader.trackIndex() != 0) {
+                continue;
+            }
+            Map<Integer, Integer> activeNotes = new HashMap<>();
+
+            while (reader.nextEvent()) {
+                int tick = (int) reader.tick();
+
+                if (reader.status() == SmfReader.META) {
+                    int type = reader.metaType();
+                    int length = reader.dataLength();
+
+                    if (type == 0x51 && length == 3) {
+                        int mpq = (reader.dataByte(0) << 16) | (reader.dataByte(1) << 8) | reader.dataByte(2);
+                        sync.tempoEvents.add(new TempoEvent(tick, mpq));
+                    } else if (type == 0x58 && length >= 2) {
+                        int numerator = reader.dataByte(0);
+                        int denominator = 1 << reader.dataByte(1);
+                        sync.timeSignatures.add(new TimeSignatureEvent(tick, numerator, denominator));
+                    }
+                } else if (reader.status() != SmfReader.SYSEX && isWantedTrack) {
+                    int cmd = reader.command();
+                    int note = reader.data1();
+                    int velocity = reader.data2();
+
+                    boolean noteOn = cmd == 0x90 && velocity > 0;
+                    boolean noteOff = cmd == 0x80 || (cmd == 0x90 && velocity == 0);
+
+                    if (noteOn) {
+                        activeNotes.put(note, tick);
+                    } else if (noteOff && activeNotes.containsKey(note)) {
+                        int start = activeNotes.remove(note);
+                        int duration = Math.max(0, tick - start);
+
+                        if (note == 116) {
+                            phrases.get(instrument.ordinal()).add(new StarPowerPhrase(start, start + duration));
+                        } else if (note == 106) {
+                            addMidiNote(byDifficulty[Difficulty.EXPERT.ordinal()], start, 7, duration);
+                        } else {
+                            for (Difficulty difficulty : difficulties) {
+                                int type = note - difficulty.lowestMidiGem;
+                                if (type >= 0 && type <= 4) {
+                                    addMidiNote(byDifficulty[difficulty.ordinal()], start, type, duration);
+                                }
                             }
                         }
                     }
                 }
             }
+        }
 
-            chartData.tempoEvents.sort((a, b) -> Integer.compare(a.time, b.time));
-            chartData.timeSignatures.sort((a, b) -> Integer.compare(a.time, b.time));
-            if (chartData.timeSignatures.isEmpty()) {
-                chartData.timeSignatures.add(new TimeSignatureEvent(0, 4, 4));
-            } else if (chartData.timeSignatures.get(0).time != 0) {
-                chartData.timeSignatures.add(0, new TimeSignatureEvent(0, 4, 4));
+        for (Track track : Track.all()) {
+            if (views[track.index()] != null) {
+                views[track.index()].starPowerPhrases = phrases.get(track.instrument.ordinal());
             }
-        } catch (InvalidMidiDataException e) {
-            throw new IOException("Invalid MIDI file: " + e.getMessage(), e);
         }
+        shareSyncData(views);
+        return views;
+    }
 
-        return chartData;
+    private static void addMidiNote(ChartData view, int start, int type, int duration) {
+        if (view != null) {
+            view.notes.add(new Note(start, type, duration));
+        }
     }
 
-    private static String getTrackName(Track track) {
-        for (int i = 0; i < track.size(); i++) {
-            MidiEvent event = track.get(i);
-            MidiMessage message = event.getMessage();
-            if (message instanceof MetaMessage) {
-                MetaMessage meta = (MetaMessage) message;
-                if (meta.getType() == 0x03) {
-                    byte[] data = meta.getData();
-                    return new String(data, StandardCharsets.US_ASCII).trim();
-                }
+    private static void shareSyncData(ChartData[] views) {
+        ChartData sync = views[SYNC];
+        sync.tempoEvents.sort((a, b) -> Integer.compare(a.time, b.time));
+        sync.timeSignatures.sort((a, b) -> Integer.compare(a.time, b.time));
+        if (sync.timeSignatures.isEmpty()) {
+            sync.timeSignatures.add(new TimeSignatureEvent(0, 4, 4));
+        } else if (sync.timeSignatures.get(0).time != 0) {
+            sync.timeSignatures.add(0, new TimeSignatureEvent(0, 4, 4));
+        }
+        for (ChartData view : views) {
+            if (view != null) {
+                view.resolution = sync.resolution;
+                view.tempoEvents = sync.tempoEvents;
+                view.timeSignatures = sync.timeSignatures;
             }
         }
-        return "";
     }
 
-    private static boolean isGuitarTrackName(String name) {
+    private static Instrument instrumentForTrackName(String name) {
         if (name == null) {
-            return false;
+            return null;
+        }
+        switch (name.trim().toUpperCase()) {
+            case "PART GUITAR":
+            case "T1 GEMS":
+                return Instrument.GUITAR;
+            case "PART GUITAR COOP":
+                return Instrument.GUITAR_COOP;
+            case "PART RHYTHM":
+                return Instrument.RHYTHM;
+            case "PART BASS":
+                return Instrument.BASS;
+            case "PART KEYS":
+                return Instrument.KEYS;
+            default:
+                return null;
         }
-        String normalized = name.trim().toUpperCase();
-        return normalized.equals("PART GUITAR") ||
-               normalized.equals("PART GUITAR COOP") ||
-               normalized.equals("T1 GEMS");
     }
 
     public static void generateChartImage(ChartData chartData, String outputFilePath) throws IOException {
@@ -321,199 +517,16 @@ public class ChartParser {
 
     public static void generateChartImage(ChartData chartData, String outputFilePath, 
                                           List<Integer> activationTimes) throws IOException {
-        // Create output directory if it doesn't exist
-        File outputFile = new File(outputFilePath);
-        File outputDir = outputFile.getParentFile();
-        if (outputDir != null && !outputDir.exists()) {
-            outputDir.mkdirs();
-        }
-
-        int width = 4000; // Increased width to make the image wider
-        int heightPerLayer = 600; // Reduced height per layer to make the image less tall
-        int margin = 50;
-        int noteSize = 20;
-        int laneHeight = (heightPerLayer - 2 * margin) / 5;
-        int timeScale = 2;
-
-        int maxTime = chartData.notes.stream().mapToInt(note -> note.time).max().orElse(0);
-        int totalLayers = (maxTime / (width * timeScale)) + 1;
-        int totalHeight = totalLayers * heightPerLayer;
-
-        BufferedImage image = new BufferedImage(width, totalHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = image.createGraphics();
-
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        g.setColor(Color.WHITE);
-        g.fillRect(0, 0, width, totalHeight);
-
-        g.setColor(Color.LIGHT_GRAY);
-        for (int layer = 0; layer < totalLayers; layer++) {
-            int layerOffset = layer * heightPerLayer;
-            for (int i = 0; i <= 5; i++) {
-                int y = layerOffset + margin + i * laneHeight;
-                g.drawLine(margin, y, width - margin, y);
-            }
-        }
-
-        g.setColor(Color.GRAY);
-        for (int layer = 0; layer < totalLayers; layer++) {
-            int layerOffset = layer * heightPerLayer;
-            for (int t = 0; t < width; t += 200) {
-                int x = margin + t;
-                int yStart = layerOffset + margin;
-                int yEnd = layerOffset + heightPerLayer - margin;
-                g.drawLine(x, yStart, x, yEnd);
-                g.drawString(String.valueOf((layer * width + t) * timeScale), x, yStart - 10);
-            }
-        }
-
-        g.setColor(new Color(173, 216, 230, 128));
-        for (StarPowerPhrase phrase : chartData.starPowerPhrases) {
-            int startLayer = (phrase.start / (width * timeScale));
-            int endLayer = (phrase.end / (width * timeScale));
-
-            for (int layer = startLayer; layer <= endLayer; layer++) {
-                int layerOffset = layer * heightPerLayer;
-                int xStart = margin + (layer == startLayer ? (phrase.start % (width * timeScale)) / timeScale : 0);
-                int xEnd = margin + (layer == endLayer ? (phrase.end % (width * timeScale)) / timeScale : width);
-                g.fillRect(xStart, layerOffset + margin, xEnd - xStart, heightPerLayer - 2 * margin);
-            }
-        }
-
-        // Draw activation times highlighted in green
-        if (activationTimes != null && !activationTimes.isEmpty()) {
-            g.setColor(new Color(0, 255, 0, 64)); // Green with transparency
-            for (int activationTime : activationTimes) {
-                int layer = activationTime / (width * timeScale);
-                int layerOffset = layer * heightPerLayer;
-                int xPos = margin + (activationTime % (width * timeScale)) / timeScale;
-                int activationWidth = 100; // Width of activation highlight
-                g.fillRect(xPos - activationWidth / 2, layerOffset + margin, activationWidth, heightPerLayer - 2 * margin);
-                
-                // Draw bright green border
-                g.setColor(Color.GREEN);
-                g.setStroke(new java.awt.BasicStroke(3));
-                g.drawRect(xPos - activationWidth / 2, layerOffset + margin, activationWidth, heightPerLayer - 2 * margin);
-                g.setColor(new Color(0, 255, 0, 64)); // Reset to transparent green
-            }
-        }
-
-        // Draw notes with colors based on type across layers, including sustains
-        Color[] noteColors = {Color.GREEN, Color.RED, Color.YELLOW, Color.BLUE, Color.ORANGE}; // types 0-4
-        Color openColor = Color.MAGENTA; // open note color (type 7)
-        for (Note note : chartData.notes) {
-            int layer = note.time / (width * timeScale);
-            int layerOffset = layer * heightPerLayer;
-            int x = margin + (note.time % (width * timeScale)) / timeScale;
-
-            boolean inStarPower = chartData.starPowerPhrases.stream()
-                    .anyMatch(phrase -> note.time >= phrase.start && note.time <= phrase.end);
-
-            if (note.open) {
-                int barWidth = Math.max(4, noteSize / 2);
-                int barX = x - barWidth / 2;
-                int barY = layerOffset + margin;
-                int barHeightFull = heightPerLayer - 2 * margin;
-                Color oc = inStarPower ? openColor.brighter() : openColor;
-                g.setColor(oc);
-                g.fillRect(barX, barY, barWidth, barHeightFull);
-
-                if (inStarPower) {
-                    Color borderColor = new Color(0, 0, 139);
-                    Stroke oldStroke = g.getStroke();
-                    Color oldColor = g.getColor();
-                    g.setColor(borderColor);
-                    g.setStroke(new BasicStroke(2));
-                    g.drawRect(barX, barY, barWidth, barHeightFull);
-                    g.setStroke(oldStroke);
-                    g.setColor(oldColor);
-                }
-
-                if (note.duration > 0) {
-                    int sustainEndX = margin + ((note.time + note.duration) % (width * timeScale)) / timeScale;
-                    int tailY = barY + barHeightFull / 2 - 2;
-                    int tailXStart = x + barWidth / 2;
-                    int tailWidth = Math.max(1, sustainEndX - tailXStart);
-                    g.fillRect(tailXStart, tailY, tailWidth, 4);
-                }
-
-                if (note.forced) {
-                    Color oldColor = g.getColor();
-                    Stroke oldStroke = g.getStroke();
-                    g.setColor(Color.BLACK);
-                    g.setStroke(new BasicStroke(2));
-                    g.drawRect(barX, barY, barWidth, barHeightFull);
-                    g.setStroke(oldStroke);
-                    g.setColor(oldColor);
-                }
-
-                if (note.tap) {
-                    int tickY = barY + barHeightFull / 2;
-                    g.setColor(Color.WHITE);
-                    g.fillRect(x - 2, tickY - 2, 4, 4);
-                }
-            } else {
-                int lane = note.type;
-                if (lane < 0 || lane > 4) continue;
-
-                int y = layerOffset + margin + lane * laneHeight + laneHeight / 2 - noteSize / 2;
-                Color col = inStarPower ? noteColors[lane].brighter() : noteColors[lane];
-
-                if (inStarPower) {
-                    int cx = x + noteSize / 2;
-                    int cy = y + noteSize / 2;
-                    int outer = Math.max(8, noteSize * 3 / 4);
-                    int inner = Math.max(4, noteSize / 3);
-                    Shape star = createStar(cx, cy, outer, inner, 5);
-                    g.setColor(col);
-                    g.fill(star);
-
-                    Color outline = col.darker();
-                    Stroke oldStroke = g.getStroke();
-                    Color oldColor = g.getColor();
-                    g.setColor(outline);
-                    g.setStroke(new BasicStroke(2));
-                    g.draw(star);
-                    g.setStroke(oldStroke);
-                    g.setColor(oldColor);
-                } else {
-                    g.setColor(col);
-                    g.fillOval(x, y, noteSize, noteSize);
-                }
-
-                if (note.duration > 0) {
-                    int sustainEndX = margin + ((note.time + note.duration) % (width * timeScale)) / timeScale;
-                    int sustainWidth = sustainEndX - x;
-                    if (sustainWidth > 0) {
-                        Color oldColor = g.getColor();
-                        g.setColor(col);
-                        g.fillRect(x + noteSize / 2 - 2, y + noteSize / 2 - 2, sustainWidth, 4);
-                        g.setColor(oldColor);
-                    }
-                }
-            }
-        }
-
-        g.dispose();
-        ImageIO.write(image, "png", new File(outputFilePath));
+        generateChartImage(ColumnarChartData.from(chartData), outputFilePath, activationTimes);
     }
 
-    private static Shape createStar(int cx, int cy, int outerRadius, int innerRadius, int points) {
-        GeneralPath path = new GeneralPath();
-        double angle = -Math.PI / 2;
-        double step = Math.PI / points;
-
-        for (int i = 0; i < points * 2; i++) {
-            double r = (i % 2 == 0) ? outerRadius : innerRadius;
-            double px = cx + Math.cos(angle) * r;
-            double py = cy + Math.sin(angle) * r;
-            if (i == 0) path.moveTo(px, py);
-            else path.lineTo(px, py);
-            angle += step;
-        }
-        path.closePath();
-        return path;
+    public static void generateChartImage(ColumnarChartData chartData, String outputFilePath,
+                                          List<Integer> activationTimes) throws IOException {
+        if (outputFilePath.endsWith(".svg") || outputFilePath.endsWith(".svgz")) {
+            ChartRenderer.writeSvg(chartData, outputFilePath, activationTimes);
+        } else {
+            ChartRenderer.writePng(chartData, outputFilePath, activationTimes);
+        }
     }
 
     public static void main(String[] args) {
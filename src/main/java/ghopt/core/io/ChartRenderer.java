@@ -0,0 +1,415 @@
+package ghopt.core.io;
+
+import java.awt.*;
+import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Draws the chart overview image: one 4000 px wide layer per stretch of the song, stacked
+ * vertically, with lanes, notes, sustains, star power phrases and activation highlights.
+ *
+ * Everything belonging to a layer is drawn inside that layer's own strip, so strips are drawn,
+ * filtered and compressed independently, on a worker pool when more than one thread is allowed,
+ * and streamed into the PNG in order. Only a bounded window of strips is in flight, so peak
+ * memory stays flat no matter how long the song is.
+ *
+ * The drawing goes through {@link ChartCanvas}, so the same code also produces an SVG document
+ * ({@link #writeSvg}) and the on-demand tiles of {@link ChartTiles}.
+ */
+public class ChartRenderer {
+
+    static final int WIDTH = 4000;
+    static final int HEIGHT_PER_LAYER = 600;
+    static final int MARGIN = 50;
+    static final int NOTE_SIZE = 20;
+    static final int LANE_HEIGHT = (HEIGHT_PER_LAYER - 2 * MARGIN) / 5;
+    static final int TIME_SCALE = 2;
+    static final int TICKS_PER_LAYER = WIDTH * TIME_SCALE;
+
+    private static final Color PHRASE_COLOR = new Color(173, 216, 230, 128);
+    private static final Color ACTIVATION_COLOR = new Color(0, 255, 0, 64);
+    private static final Color OPEN_SP_BORDER = new Color(0, 0, 139);
+    private static final Color[] NOTE_COLORS = {Color.GREEN, Color.RED, Color.YELLOW, Color.BLUE, Color.ORANGE}; // types 0-4
+    private static final Color OPEN_COLOR = Color.MAGENTA; // open note color (type 7)
+    // Star power variants, derived once instead of per note
+    private static final Color[] NOTE_SP_COLORS = new Color[NOTE_COLORS.length];
+    private static final Color[] NOTE_SP_OUTLINES = new Color[NOTE_COLORS.length];
+    private static final Color OPEN_SP_COLOR = OPEN_COLOR.brighter();
+
+    static {
+        for (int lane = 0; lane < NOTE_COLORS.length; lane++) {
+            NOTE_SP_COLORS[lane] = NOTE_COLORS[lane].brighter();
+            NOTE_SP_OUTLINES[lane] = NOTE_SP_COLORS[lane].darker();
+        }
+    }
+
+    /**
+     * HIGH draws everything antialiased through Java2D and compresses for size. FAST writes
+     * straight into the strip's pixels without antialiasing, blits notes and labels from
+     * pre-rasterized sprites and uses the cheap PNG filter and deflate level, for previews and
+     * thumbnails in bulk.
+     */
+    public enum Quality { HIGH, FAST }
+
+    public static int layerCount(ColumnarChartData chartData) {
+        return (chartData.maxNoteTime() / TICKS_PER_LAYER) + 1;
+    }
+
+    /** Renders the chart as a PNG file on all cores; returns the number of bytes written. */
+    public static long writePng(ColumnarChartData chartData, String outputFilePath,
+                                List<Integer> activationTimes) throws IOException {
+        return writePng(chartData, outputFilePath, activationTimes, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static long writePng(ColumnarChartData chartData, String outputFilePath,
+                                List<Integer> activationTimes, int threads) throws IOException {
+        return writePng(chartData, outputFilePath, activationTimes, threads, Quality.HIGH);
+    }
+
+    public static long writePng(ColumnarChartData chartData, String outputFilePath, List<Integer> activationTimes,
+                                int threads, Quality quality) throws IOException {
+        // Create output directory if it doesn't exist
+        File outputFile = new File(outputFilePath);
+        File outputDir = outputFile.getParentFile();
+        if (outputDir != null && !outputDir.exists()) {
+            outputDir.mkdirs();
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), 64 * 1024)) {
+            return writePng(chartData, out, activationTimes, threads, quality);
+        }
+    }
+
+    public static long writePng(ColumnarChartData chartData, OutputStream out,
+                                List<Integer> activationTimes, int threads) throws IOException {
+        return writePng(chartData, out, activationTimes, threads, Quality.HIGH);
+    }
+
+    public static long writePng(ColumnarChartData chartData, OutputStream out, List<Integer> activationTimes,
+                                int threads, Quality quality) throws IOException {
+        long start = System.nanoTime();
+        long bytes = encodePng(chartData, out, activationTimes, threads, quality);
+        if (Metrics.enabled()) {
+            Metrics.rendered(quality == Quality.FAST ? "png-fast" : "png", System.nanoTime() - start, bytes, chartData.noteCount);
+        }
+        return bytes;
+    }
+
+    private static long encodePng(ColumnarChartData chartData, OutputStream out, List<Integer> activationTimes,
+                                  int threads, Quality quality) throws IOException {
+        int totalLayers = layerCount(chartData);
+        int[] layerNoteStarts = layerNoteStarts(chartData, totalLayers);
+        PngStripWriter png = new PngStripWriter(out, WIDTH, totalLayers * HEIGHT_PER_LAYER);
+
+        if (threads <= 1 || totalLayers == 1) {
+            BufferedImage strip = newStrip();
+            for (int layer = 0; layer < totalLayers; layer++) {
+                png.writeStrip(encodeLayer(strip, chartData, activationTimes, layer, layerNoteStarts, totalLayers, quality));
+            }
+            return png.finish();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // Strips are only touched by the task that draws and encodes them, so each worker reuses one.
+        ThreadLocal<BufferedImage> strips = ThreadLocal.withInitial(ChartRenderer::newStrip);
+        try {
+            ArrayDeque<Future<PngStripWriter.EncodedStrip>> inFlight = new ArrayDeque<>();
+            int nextLayer = 0;
+            while (nextLayer < totalLayers || !inFlight.isEmpty()) {
+                while (nextLayer < totalLayers && inFlight.size() < threads * 2) {
+                    int layer = nextLayer++;
+                    inFlight.add(pool.submit(() ->
+                            encodeLayer(strips.get(), chartData, activationTimes, layer, layerNoteStarts, totalLayers, quality)));
+                }
+                png.writeStrip(await(inFlight.poll()));
+            }
+            return png.finish();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the chart as an SVG document from the same drawing code as the PNG; a path ending
+     * in {@code .svgz} is gzip-compressed. Returns the number of bytes written.
+     */
+    public static long writeSvg(ColumnarChartData chartData, String outputFilePath,
+                                List<Integer> activationTimes) throws IOException {
+        long start = System.nanoTime();
+        File outputFile = new File(outputFilePath);
+        File outputDir = outputFile.getParentFile();
+        if (outputDir != null && !outputDir.exists()) {
+            outputDir.mkdirs();
+        }
+
+        try (OutputStream file = new FileOutputStream(outputFile)) {
+            OutputStream out = outputFilePath.endsWith(".svgz") ? new GZIPOutputStream(file, 64 * 1024) : file;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024)) {
+                writeSvg(chartData, writer, activationTimes);
+            }
+        }
+        long bytes = outputFile.length();
+        if (Metrics.enabled()) {
+            Metrics.rendered(outputFilePath.endsWith(".svgz") ? "svgz" : "svg", System.nanoTime() - start, bytes,
+                    chartData.noteCount);
+        }
+        return bytes;
+    }
+
+    public static void writeSvg(ColumnarChartData chartData, Writer out,
+                                List<Integer> activationTimes) throws IOException {
+        int totalLayers = layerCount(chartData);
+        int[] layerNoteStarts = layerNoteStarts(chartData, totalLayers);
+        SvgCanvas svg = new SvgCanvas(out);
+        svg.begin(WIDTH, totalLayers * HEIGHT_PER_LAYER);
+        try {
+            for (int layer = 0; layer < totalLayers; layer++) {
+                svg.beginGroup("layer-" + layer);
+                drawLayer(svg, chartData, activationTimes, layer, layerNoteStarts[layer], layerNoteStarts[layer + 1]);
+                svg.endGroup();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        svg.end();
+    }
+
+    private static BufferedImage newStrip() {
+        return new BufferedImage(WIDTH, HEIGHT_PER_LAYER, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /** Index of the first note on each layer, plus noteCount at the end; notes are sorted by time. */
+    static int[] layerNoteStarts(ColumnarChartData chartData, int totalLayers) {
+        int[] starts = new int[totalLayers + 1];
+        int n = 0;
+        for (int layer = 0; layer < totalLayers; layer++) {
+            starts[layer] = n;
+            while (n < chartData.noteCount && chartData.noteTimes[n] / TICKS_PER_LAYER == layer) {
+                n++;
+            }
+        }
+        starts[totalLayers] = chartData.noteCount;
+        return starts;
+    }
+
+    private static PngStripWriter.EncodedStrip encodeLayer(BufferedImage strip, ColumnarChartData chartData,
+                                                           List<Integer> activationTimes, int layer,
+                                                           int[] layerNoteStarts, int totalLayers, Quality quality) {
+        if (quality == Quality.FAST) {
+            RasterCanvas canvas = new RasterCanvas(strip, layer * HEIGHT_PER_LAYER);
+            drawLayer(canvas, chartData, activationTimes, layer, layerNoteStarts[layer], layerNoteStarts[layer + 1]);
+            canvas.dispose();
+        } else {
+            drawLayer(strip, chartData, activationTimes, layer, layerNoteStarts[layer], layerNoteStarts[layer + 1]);
+        }
+        int[] pixels = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+        PngStripWriter.Compression compression =
+                quality == Quality.FAST ? PngStripWriter.Compression.FAST : PngStripWriter.Compression.SMALL;
+        return PngStripWriter.encode(pixels, 0, WIDTH, WIDTH, HEIGHT_PER_LAYER, layer == totalLayers - 1, compression);
+    }
+
+    private static PngStripWriter.EncodedStrip await(Future<PngStripWriter.EncodedStrip> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while rendering chart image");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to render chart strip: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Draws one layer into {@code strip}, which must be WIDTH x HEIGHT_PER_LAYER. Notes
+     * {@code noteFrom} (inclusive) to {@code noteTo} (exclusive) are the ones on this layer.
+     */
+    static void drawLayer(BufferedImage strip, ColumnarChartData chartData, List<Integer> activationTimes,
+                          int layer, int noteFrom, int noteTo) {
+        Graphics2D g = strip.createGraphics();
+        // Draw in whole-image coordinates; the strip only sees its own layer.
+        g.translate(0, -layer * HEIGHT_PER_LAYER);
+        drawLayer(new ChartCanvas.GraphicsCanvas(g), chartData, activationTimes, layer, noteFrom, noteTo);
+        g.dispose();
+    }
+
+    /** m:ss.s, truncated to the tenth of a second. */
+    static String formatTime(long micros) {
+        long tenths = micros / 100_000;
+        long seconds = tenths / 10;
+        return (seconds / 60) + ":" + (seconds % 60 < 10 ? "0" : "") + (seconds % 60) + "." + (tenths % 10);
+    }
+
+    /** Draws one layer onto {@code g} in whole-image coordinates. */
+    static void drawLayer(ChartCanvas g, ColumnarChartData chartData, List<Integer> activationTimes,
+                          int layer, int noteFrom, int noteTo) {
+        int layerOffset = layer * HEIGHT_PER_LAYER;
+
+        g.setColor(Color.WHITE);
+        g.fillRect(0, layerOffset, WIDTH, HEIGHT_PER_LAYER);
+
+        g.setColor(Color.LIGHT_GRAY);
+        for (int i = 0; i <= 5; i++) {
+            int y = layerOffset + MARGIN + i * LANE_HEIGHT;
+            g.drawLine(MARGIN, y, WIDTH - MARGIN, y);
+        }
+
+        // Grid lines are labelled with their tick and, above it, the song time at that tick.
+        TempoMap.Cursor tempo = chartData.tempoMap().cursor();
+        g.setColor(Color.GRAY);
+        for (int t = 0; t < WIDTH; t += 200) {
+            int x = MARGIN + t;
+            int yStart = layerOffset + MARGIN;
+            int yEnd = layerOffset + HEIGHT_PER_LAYER - MARGIN;
+            int tick = (layer * WIDTH + t) * TIME_SCALE;
+            g.drawLine(x, yStart, x, yEnd);
+            g.drawString(String.valueOf(tick), x, yStart - 10);
+            g.drawString(formatTime(tempo.micros(tick)), x, yStart - 24);
+        }
+
+        g.setColor(PHRASE_COLOR);
+        for (int p = 0; p < chartData.phraseCount; p++) {
+            int phraseStart = chartData.phraseStarts[p];
+            int phraseEnd = chartData.phraseEnds[p];
+            int startLayer = (phraseStart / TICKS_PER_LAYER);
+            int endLayer = (phraseEnd / TICKS_PER_LAYER);
+            if (layer < startLayer || layer > endLayer) {
+                continue;
+            }
+
+            int xStart = MARGIN + (layer == startLayer ? (phraseStart % TICKS_PER_LAYER) / TIME_SCALE : 0);
+            int xEnd = MARGIN + (layer == endLayer ? (phraseEnd % TICKS_PER_LAYER) / TIME_SCALE : WIDTH);
+            g.fillRect(xStart, layerOffset + MARGIN, xEnd - xStart, HEIGHT_PER_LAYER - 2 * MARGIN);
+        }
+
+        // Draw activation times highlighted in green
+        if (activationTimes != null && !activationTimes.isEmpty()) {
+            g.setColor(ACTIVATION_COLOR); // Green with transparency
+            for (int activationTime : activationTimes) {
+                if (activationTime / TICKS_PER_LAYER != layer) {
+                    continue;
+                }
+                int xPos = MARGIN + (activationTime % TICKS_PER_LAYER) / TIME_SCALE;
+                int activationWidth = 100; // Width of activation highlight
+                g.fillRect(xPos - activationWidth / 2, layerOffset + MARGIN, activationWidth, HEIGHT_PER_LAYER - 2 * MARGIN);
+
+                // Draw bright green border
+                g.setColor(Color.GREEN);
+                g.drawRect(xPos - activationWidth / 2, layerOffset + MARGIN, activationWidth, HEIGHT_PER_LAYER - 2 * MARGIN, 3);
+                g.setColor(ACTIVATION_COLOR); // Reset to transparent green
+            }
+        }
+
+        // Draw notes with colors based on type, including sustains
+        PhraseIndex.Cursor phrases = chartData.phraseIndex().cursor();
+        if (noteFrom < noteTo) {
+            phrases.seek(chartData.noteTimes[noteFrom]);
+        }
+        for (int n = noteFrom; n < noteTo; n++) {
+            drawNote(g, chartData, n, layerOffset, phrases.contains(chartData.noteTimes[n]));
+        }
+    }
+
+    private static void drawNote(ChartCanvas g, ColumnarChartData chartData, int n, int layerOffset,
+                                 boolean inStarPower) {
+        int noteTime = chartData.noteTimes[n];
+        int noteDuration = chartData.noteDurations[n];
+        int x = MARGIN + (noteTime % TICKS_PER_LAYER) / TIME_SCALE;
+
+        if (chartData.isOpen(n)) {
+            int barWidth = Math.max(4, NOTE_SIZE / 2);
+            int barX = x - barWidth / 2;
+            int barY = layerOffset + MARGIN;
+            int barHeightFull = HEIGHT_PER_LAYER - 2 * MARGIN;
+            Color oc = inStarPower ? OPEN_SP_COLOR : OPEN_COLOR;
+            g.setColor(oc);
+            g.fillRect(barX, barY, barWidth, barHeightFull);
+
+            if (inStarPower) {
+                g.setColor(OPEN_SP_BORDER);
+                g.drawRect(barX, barY, barWidth, barHeightFull, 2);
+                g.setColor(oc);
+            }
+
+            if (noteDuration > 0) {
+                int sustainEndX = MARGIN + ((noteTime + noteDuration) % TICKS_PER_LAYER) / TIME_SCALE;
+                int tailY = barY + barHeightFull / 2 - 2;
+                int tailXStart = x + barWidth / 2;
+                int tailWidth = Math.max(1, sustainEndX - tailXStart);
+                g.fillRect(tailXStart, tailY, tailWidth, 4);
+            }
+
+            if (chartData.isForced(n)) {
+                g.setColor(Color.BLACK);
+                g.drawRect(barX, barY, barWidth, barHeightFull, 2);
+                g.setColor(oc);
+            }
+
+            if (chartData.isTap(n)) {
+                int tickY = barY + barHeightFull / 2;
+                g.setColor(Color.WHITE);
+                g.fillRect(x - 2, tickY - 2, 4, 4);
+            }
+        } else {
+            int lane = chartData.noteTypes[n];
+            if (lane < 0 || lane > 4) return;
+
+            int y = layerOffset + MARGIN + lane * LANE_HEIGHT + LANE_HEIGHT / 2 - NOTE_SIZE / 2;
+            Color col = inStarPower ? NOTE_SP_COLORS[lane] : NOTE_COLORS[lane];
+
+            if (inStarPower) {
+                int cx = x + NOTE_SIZE / 2;
+                int cy = y + NOTE_SIZE / 2;
+                int outer = Math.max(8, NOTE_SIZE * 3 / 4);
+                int inner = Math.max(4, NOTE_SIZE / 3);
+                g.starNote(cx, cy, outer, inner, col, NOTE_SP_OUTLINES[lane]);
+            } else {
+                g.noteHead(x, y, NOTE_SIZE, col);
+            }
+
+            if (noteDuration > 0) {
+                int sustainEndX = MARGIN + ((noteTime + noteDuration) % TICKS_PER_LAYER) / TIME_SCALE;
+                int sustainWidth = sustainEndX - x;
+                if (sustainWidth > 0) {
+                    g.setColor(col);
+                    g.fillRect(x + NOTE_SIZE / 2 - 2, y + NOTE_SIZE / 2 - 2, sustainWidth, 4);
+                }
+            }
+        }
+    }
+
+    static Shape createStar(int cx, int cy, int outerRadius, int innerRadius, int points) {
+        GeneralPath path = new GeneralPath();
+        double angle = -Math.PI / 2;
+        double step = Math.PI / points;
+
+        for (int i = 0; i < points * 2; i++) {
+            double r = (i % 2 == 0) ? outerRadius : innerRadius;
+            double px = cx + Math.cos(angle) * r;
+            double py = cy + Math.sin(angle) * r;
+            if (i == 0) path.moveTo(px, py);
+            else path.lineTo(px, py);
+            angle += step;
+        }
+        path.closePath();
+        return path;
+    }
+}
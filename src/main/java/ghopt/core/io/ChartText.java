@@ -0,0 +1,91 @@
+package ghopt.core.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Read-only character view over the raw bytes of a .chart file.
+ *
+ * Characters are read straight out of the bytes, so the file is never decoded into a String. The
+ * encoding is taken from the byte order mark (UTF-8, UTF-16LE, UTF-16BE), or guessed from zero
+ * bytes when a UTF-16 file has none. In single-byte mode every byte maps to one char: the section
+ * headers, keys and numbers the parser reads are all ASCII, and any multi-byte UTF-8 sequences
+ * only show up in [Song] text values, which are never interpreted.
+ *
+ * Files are read onto the heap rather than memory-mapped. A mapping lives until it is garbage
+ * collected, which keeps the file locked on Windows while an editor tries to save it, and faults
+ * instead of throwing an IOException if the file is truncated under it. Charts are a few hundred
+ * kilobytes, so the copy is cheap.
+ */
+class ChartText implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+    private final boolean wide;
+
+    private ChartText(ByteBuffer bytes, int offset, int length, boolean wide) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.wide = wide;
+    }
+
+    static ChartText read(Path path) throws IOException {
+        return of(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    static ChartText of(ByteBuffer buffer) {
+        ByteBuffer bytes = buffer.duplicate();
+        int size = bytes.limit();
+        int b0 = size > 0 ? bytes.get(0) & 0xFF : -1;
+        int b1 = size > 1 ? bytes.get(1) & 0xFF : -1;
+        int b2 = size > 2 ? bytes.get(2) & 0xFF : -1;
+
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            return new ChartText(bytes, 3, size - 3, false);
+        }
+        if (b0 == 0xFF && b1 == 0xFE) {
+            return new ChartText(bytes.order(ByteOrder.LITTLE_ENDIAN), 2, (size - 2) / 2, true);
+        }
+        if (b0 == 0xFE && b1 == 0xFF) {
+            return new ChartText(bytes.order(ByteOrder.BIG_ENDIAN), 2, (size - 2) / 2, true);
+        }
+        if (b0 > 0 && b1 == 0) {
+            return new ChartText(bytes.order(ByteOrder.LITTLE_ENDIAN), 0, size / 2, true);
+        }
+        if (b0 == 0 && b1 > 0) {
+            return new ChartText(bytes.order(ByteOrder.BIG_ENDIAN), 0, size / 2, true);
+        }
+        return new ChartText(bytes, 0, size, false);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return wide
+                ? bytes.getChar(offset + 2 * index)
+                : (char) (bytes.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append(charAt(i));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
@@ -0,0 +1,135 @@
+package ghopt.core.io;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Web-map style PNG tiles of the chart overview image, rendered only when asked for.
+ *
+ * The tiles cover the same stacked-layer picture as {@link ChartRenderer#writePng}. At
+ * {@link #maxZoom()} one tile pixel is one image pixel; each zoom level below halves the scale,
+ * down to zoom 0 where the whole chart fits in a single tile. A tile only draws the layers it
+ * overlaps, so serving a viewport costs a few hundred pixels squared instead of the whole song.
+ * {@code OptimizerServer} serves them as {@code /tiles/{z}/{x}/{y}}.
+ *
+ * With a cache directory, rendered tiles are kept as {@code <dir>/<key>/<z>/<x>/<y>.png}, where
+ * the key covers the chart contents and the activations, so a changed chart or path never
+ * serves stale tiles.
+ */
+public class ChartTiles {
+
+    public static final int TILE_SIZE = 256;
+    private static final int TILE_FORMAT_VERSION = 1;
+
+    private final ColumnarChartData chartData;
+    private final List<Integer> activationTimes;
+    private final int totalLayers;
+    private final int[] layerNoteStarts;
+    private final int imageHeight;
+    private final int maxZoom;
+    private final Path cacheDir;
+
+    public ChartTiles(ColumnarChartData chartData, List<Integer> activationTimes) {
+        this(chartData, activationTimes, null);
+    }
+
+    public ChartTiles(ColumnarChartData chartData, List<Integer> activationTimes, Path cacheDir) {
+        this.chartData = chartData;
+        this.activationTimes = activationTimes == null ? List.of() : List.copyOf(activationTimes);
+        this.totalLayers = ChartRenderer.layerCount(chartData);
+        this.layerNoteStarts = ChartRenderer.layerNoteStarts(chartData, totalLayers);
+        this.imageHeight = totalLayers * ChartRenderer.HEIGHT_PER_LAYER;
+
+        int zoom = 0;
+        while (((long) TILE_SIZE << zoom) < Math.max(ChartRenderer.WIDTH, imageHeight)) {
+            zoom++;
+        }
+        this.maxZoom = zoom;
+        this.cacheDir = cacheDir == null ? null : cacheDir.resolve(cacheKey());
+    }
+
+    public int maxZoom() {
+        return maxZoom;
+    }
+
+    public int columns(int zoom) {
+        return tilesFor(ChartRenderer.WIDTH, zoom);
+    }
+
+    public int rows(int zoom) {
+        return tilesFor(imageHeight, zoom);
+    }
+
+    /** PNG bytes of tile (x, y) at {@code zoom}, from the cache if it has been rendered before. */
+    public byte[] tile(int zoom, int x, int y) throws IOException {
+        if (zoom < 0 || zoom > maxZoom || x < 0 || x >= columns(zoom) || y < 0 || y >= rows(zoom)) {
+            throw new IllegalArgumentException("No tile " + zoom + "/" + x + "/" + y);
+        }
+
+        Path cached = cacheDir == null ? null : cacheDir.resolve(zoom + "/" + x + "/" + y + ".png");
+        if (cached != null && Files.isRegularFile(cached)) {
+            return Files.readAllBytes(cached);
+        }
+
+        byte[] png = render(zoom, x, y);
+        if (cached != null) {
+            Files.createDirectories(cached.getParent());
+            Path temp = Files.createTempFile(cached.getParent(), "tile", ".tmp");
+            try {
+                Files.write(temp, png);
+                Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return png;
+    }
+
+    private byte[] render(int zoom, int x, int y) throws IOException {
+        double scale = 1.0 / (1 << (maxZoom - zoom));
+        double originX = x * TILE_SIZE / scale;
+        double originY = y * TILE_SIZE / scale;
+        double span = TILE_SIZE / scale;
+
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tile.createGraphics();
+        g.scale(scale, scale);
+        g.translate(-originX, -originY);
+        // Past the right and bottom edges of the chart the tile stays transparent.
+        g.clipRect(0, 0, ChartRenderer.WIDTH, imageHeight);
+
+        int firstLayer = (int) (originY / ChartRenderer.HEIGHT_PER_LAYER);
+        int lastLayer = Math.min(totalLayers - 1, (int) Math.ceil((originY + span) / ChartRenderer.HEIGHT_PER_LAYER) - 1);
+        ChartCanvas canvas = new ChartCanvas.GraphicsCanvas(g);
+        for (int layer = firstLayer; layer <= lastLayer; layer++) {
+            ChartRenderer.drawLayer(canvas, chartData, activationTimes, layer,
+                    layerNoteStarts[layer], layerNoteStarts[layer + 1]);
+        }
+        g.dispose();
+
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 * 1024);
+        PngStripWriter png = new PngStripWriter(out, TILE_SIZE, TILE_SIZE);
+        png.writeStrip(PngStripWriter.encode(pixels, 0, TILE_SIZE, TILE_SIZE, TILE_SIZE, true));
+        png.finish();
+        return out.toByteArray();
+    }
+
+    private int tilesFor(int pixels, int zoom) {
+        long scaled = (((long) pixels << zoom) + (1L << maxZoom) - 1) >> maxZoom;
+        return (int) Math.max(1, (scaled + TILE_SIZE - 1) / TILE_SIZE);
+    }
+
+    private String cacheKey() {
+        String key = OptimalPathCache.chartHash(chartData) + "|" + activationTimes + "|" + TILE_FORMAT_VERSION;
+        return ChartCache.sha256Hex(key.getBytes(StandardCharsets.UTF_8));
+    }
+}
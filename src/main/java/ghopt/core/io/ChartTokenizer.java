@@ -0,0 +1,190 @@
+package ghopt.core.io;
+
+/**
+ * Single-pass line and token scanner for .chart text.
+ *
+ * Works directly on index ranges of the underlying text instead of creating a String per line
+ * or a String[] per split. Each line is trimmed the way String.trim() does, split once on its
+ * '=' into key and value, and the value is split on single spaces, mirroring
+ * {@code line.split("=")} followed by {@code value.trim().split(" ")}.
+ */
+class ChartTokenizer {
+
+    private static final int MAX_TOKENS = 4; // chart events never need more than the first three
+
+    private final CharSequence text;
+    private final int length;
+    private int position;
+
+    private int lineStart;
+    private int lineEnd;
+
+    private int keyStart;
+    private int keyEnd;
+    private int valueStart;
+    private int valueEnd;
+
+    private final int[] tokenStarts = new int[MAX_TOKENS];
+    private final int[] tokenEnds = new int[MAX_TOKENS];
+    private int tokenCount;
+
+    ChartTokenizer(CharSequence text) {
+        this(text, 0);
+    }
+
+    ChartTokenizer(CharSequence text, int start) {
+        this.text = text;
+        this.length = text.length();
+        this.position = start;
+    }
+
+    /** Advances to the next line; returns false at end of input. */
+    boolean nextLine() {
+        if (position >= length) {
+            return false;
+        }
+        int start = position;
+        int end = start;
+        while (end < length) {
+            char c = text.charAt(end);
+            if (c == '\n' || c == '\r') {
+                break;
+            }
+            end++;
+        }
+        position = end + 1;
+        if (end < length && text.charAt(end) == '\r' && position < length && text.charAt(position) == '\n') {
+            position++;
+        }
+
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        lineStart = start;
+        lineEnd = end;
+        return true;
+    }
+
+    boolean lineEquals(String s) {
+        return lineEnd - lineStart == s.length() && regionMatches(lineStart, s);
+    }
+
+    boolean lineStartsWith(String s) {
+        return lineEnd - lineStart >= s.length() && regionMatches(lineStart, s);
+    }
+
+    /** The current line, trimmed; for the rare lines worth a String, like section headers. */
+    String line() {
+        return text.subSequence(lineStart, lineEnd).toString();
+    }
+
+    /**
+     * Splits the current line into key and value around its '='. Returns false where
+     * {@code line.split("=")} would not yield exactly two parts.
+     */
+    boolean splitKeyValue() {
+        // split drops trailing empty parts, so '=' signs ending the line do not count.
+        int end = lineEnd;
+        while (end > lineStart && text.charAt(end - 1) == '=') end--;
+        int eq = -1;
+        for (int i = lineStart; i < end; i++) {
+            if (text.charAt(i) == '=') {
+                if (eq >= 0) return false;
+                eq = i;
+            }
+        }
+        if (eq < 0) {
+            return false;
+        }
+        keyStart = lineStart;
+        keyEnd = eq;
+        valueStart = eq + 1;
+        valueEnd = end;
+
+        while (keyStart < keyEnd && text.charAt(keyStart) <= ' ') keyStart++;
+        while (keyEnd > keyStart && text.charAt(keyEnd - 1) <= ' ') keyEnd--;
+        while (valueStart < valueEnd && text.charAt(valueStart) <= ' ') valueStart++;
+        while (valueEnd > valueStart && text.charAt(valueEnd - 1) <= ' ') valueEnd--;
+
+        splitValueTokens();
+        return true;
+    }
+
+    private void splitValueTokens() {
+        tokenCount = 0;
+        int start = valueStart;
+        for (int i = valueStart; i <= valueEnd; i++) {
+            if (i == valueEnd || text.charAt(i) == ' ') {
+                if (tokenCount < MAX_TOKENS) {
+                    tokenStarts[tokenCount] = start;
+                    tokenEnds[tokenCount] = i;
+                }
+                tokenCount++;
+                start = i + 1;
+            }
+        }
+    }
+
+    int keyInt() {
+        return parseInt(keyStart, keyEnd);
+    }
+
+    int valueInt() {
+        return parseInt(valueStart, valueEnd);
+    }
+
+    int tokenCount() {
+        return tokenCount;
+    }
+
+    boolean tokenEquals(int index, String s) {
+        return tokenEnds[index] - tokenStarts[index] == s.length() && regionMatches(tokenStarts[index], s);
+    }
+
+    int tokenInt(int index) {
+        return parseInt(tokenStarts[index], tokenEnds[index]);
+    }
+
+    private boolean regionMatches(int offset, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(offset + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Parses a decimal int in [start, end) with the same acceptance rules as Integer.parseInt. */
+    private int parseInt(int start, int end) {
+        if (start >= end) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        boolean negative = false;
+        int i = start;
+        char first = text.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                throw numberFormat(start, end);
+            }
+        }
+        // Accumulate negatively so Integer.MIN_VALUE parses without overflow.
+        long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw numberFormat(start, end);
+            }
+            result = result * 10 - digit;
+            if (result < limit) {
+                throw numberFormat(start, end);
+            }
+        }
+        return (int) (negative ? result : -result);
+    }
+
+    private NumberFormatException numberFormat(int start, int end) {
+        return new NumberFormatException("For input string: \"" + text.subSequence(start, end) + "\"");
+    }
+}
@@ -0,0 +1,187 @@
+package ghopt.core.io;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Primitive, column-per-field form of {@link ChartParser.ChartData}.
+ *
+ * Notes are stored as parallel int arrays plus a flags byte, already sorted by time, and phrases,
+ * tempo and time-signature events get the same treatment. A resident chart costs a few arrays
+ * instead of one object per event, and the optimizer and renderer walk it sequentially.
+ */
+public class ColumnarChartData {
+
+    public static final int FLAG_FORCED = 1;
+    public static final int FLAG_TAP = 1 << 1;
+    public static final int FLAG_OPEN = 1 << 2;
+
+    public int resolution = 480;
+
+    public int noteCount;
+    public int[] noteTimes = new int[0];
+    public int[] noteTypes = new int[0];
+    public int[] noteDurations = new int[0];
+    public byte[] noteFlags = new byte[0];
+
+    public int phraseCount; // sorted by start
+    public int[] phraseStarts = new int[0];
+    public int[] phraseEnds = new int[0];
+
+    public int tempoCount;
+    public int[] tempoTimes = new int[0];
+    public int[] tempoMicrosecondsPerQuarter = new int[0];
+
+    public int timeSignatureCount;
+    public int[] timeSignatureTimes = new int[0];
+    public int[] timeSignatureNumerators = new int[0];
+    public int[] timeSignatureDenominators = new int[0];
+
+    private PhraseIndex phraseIndex;
+
+    /**
+     * Phrase lookup for this chart, built on first use. Rebuild the chart rather than editing the
+     * phrase columns afterwards, or the index goes stale.
+     */
+    public PhraseIndex phraseIndex() {
+        PhraseIndex index = phraseIndex;
+        if (index == null) {
+            // A race only builds an identical index twice; PhraseIndex is immutable.
+            index = PhraseIndex.of(this);
+            phraseIndex = index;
+        }
+        return index;
+    }
+
+    private TempoMap tempoMap;
+
+    /** Tick-to-time and tick-to-bar lookup for this chart, built on first use, like {@link #phraseIndex}. */
+    public TempoMap tempoMap() {
+        TempoMap map = tempoMap;
+        if (map == null) {
+            map = TempoMap.of(this);
+            tempoMap = map;
+        }
+        return map;
+    }
+
+    private String contentHash;
+
+    /**
+     * SHA-256 of the chart's columns, independent of where the file lives. Computed on first use
+     * and kept, like {@link #phraseIndex}, so build a new chart rather than editing the columns.
+     */
+    public String contentHash() {
+        String hash = contentHash;
+        if (hash == null) {
+            hash = ChartCache.sha256Hex(ChartCache.write(this, 0, 0).array());
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    public boolean isForced(int note) {
+        return (noteFlags[note] & FLAG_FORCED) != 0;
+    }
+
+    public boolean isTap(int note) {
+        return (noteFlags[note] & FLAG_TAP) != 0;
+    }
+
+    public boolean isOpen(int note) {
+        return (noteFlags[note] & FLAG_OPEN) != 0;
+    }
+
+    public int maxNoteTime() {
+        return noteCount == 0 ? 0 : noteTimes[noteCount - 1];
+    }
+
+    public static ColumnarChartData from(ChartParser.ChartData chartData) {
+        ColumnarChartData data = new ColumnarChartData();
+        data.resolution = chartData.resolution;
+
+        // Stable sorts, so events sharing a tick keep their parse order.
+        List<ChartParser.Note> notes = new ArrayList<>(chartData.notes);
+        notes.sort(Comparator.comparingInt(n -> n.time));
+        data.noteCount = notes.size();
+        data.noteTimes = new int[data.noteCount];
+        data.noteTypes = new int[data.noteCount];
+        data.noteDurations = new int[data.noteCount];
+        data.noteFlags = new byte[data.noteCount];
+        for (int i = 0; i < data.noteCount; i++) {
+            ChartParser.Note note = notes.get(i);
+            data.noteTimes[i] = note.time;
+            data.noteTypes[i] = note.type;
+            data.noteDurations[i] = note.duration;
+            data.noteFlags[i] = (byte) ((note.forced ? FLAG_FORCED : 0) |
+                    (note.tap ? FLAG_TAP : 0) |
+                    (note.open ? FLAG_OPEN : 0));
+        }
+
+        List<ChartParser.StarPowerPhrase> phrases = new ArrayList<>(chartData.starPowerPhrases);
+        phrases.sort(Comparator.comparingInt(p -> p.start));
+        data.phraseCount = phrases.size();
+        data.phraseStarts = new int[data.phraseCount];
+        data.phraseEnds = new int[data.phraseCount];
+        for (int i = 0; i < data.phraseCount; i++) {
+            data.phraseStarts[i] = phrases.get(i).start;
+            data.phraseEnds[i] = phrases.get(i).end;
+        }
+
+        data.tempoCount = chartData.tempoEvents.size();
+        data.tempoTimes = new int[data.tempoCount];
+        data.tempoMicrosecondsPerQuarter = new int[data.tempoCount];
+        for (int i = 0; i < data.tempoCount; i++) {
+            data.tempoTimes[i] = chartData.tempoEvents.get(i).time;
+            data.tempoMicrosecondsPerQuarter[i] = chartData.tempoEvents.get(i).microsecondsPerQuarter;
+        }
+
+        data.timeSignatureCount = chartData.timeSignatures.size();
+        data.timeSignatureTimes = new int[data.timeSignatureCount];
+        data.timeSignatureNumerators = new int[data.timeSignatureCount];
+        data.timeSignatureDenominators = new int[data.timeSignatureCount];
+        for (int i = 0; i < data.timeSignatureCount; i++) {
+            ChartParser.TimeSignatureEvent ts = chartData.timeSignatures.get(i);
+            data.timeSignatureTimes[i] = ts.time;
+            data.timeSignatureNumerators[i] = ts.numerator;
+            data.timeSignatureDenominators[i] = ts.denominator;
+        }
+
+        return data;
+    }
+
+    public ChartParser.ChartData toChartData() {
+        ChartParser.ChartData chartData = new ChartParser.ChartData();
+        chartData.resolution = resolution;
+        for (int i = 0; i < noteCount; i++) {
+            ChartParser.Note note = new ChartParser.Note(noteTimes[i], noteTypes[i], noteDurations[i]);
+            note.forced = isForced(i);
+            note.tap = isTap(i);
+            note.open = isOpen(i);
+            chartData.notes.add(note);
+        }
+        for (int i = 0; i < phraseCount; i++) {
+            chartData.starPowerPhrases.add(new ChartParser.StarPowerPhrase(phraseStarts[i], phraseEnds[i]));
+        }
+        for (int i = 0; i < tempoCount; i++) {
+            chartData.tempoEvents.add(new ChartParser.TempoEvent(tempoTimes[i], tempoMicrosecondsPerQuarter[i]));
+        }
+        for (int i = 0; i < timeSignatureCount; i++) {
+            chartData.timeSignatures.add(new ChartParser.TimeSignatureEvent(
+                    timeSignatureTimes[i], timeSignatureNumerators[i], timeSignatureDenominators[i]));
+        }
+        return chartData;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarChartData{" +
+                "resolution=" + resolution +
+                ", noteCount=" + noteCount +
+                ", phraseCount=" + phraseCount +
+                ", tempoCount=" + tempoCount +
+                ", timeSignatureCount=" + timeSignatureCount +
+                '}';
+    }
+}
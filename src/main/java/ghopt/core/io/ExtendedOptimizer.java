@@ -0,0 +1,97 @@
+package ghopt.core.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Star power paths for competitive play. On top of the {@link StarPowerOptimizer} model, this
+ * credits whammy on star power sustains ({@link Rules#whammyPerBeat}) and squeezes: when star
+ * power runs out less than {@link Rules#timingWindowMillis} before a note, that note can be hit
+ * early enough to still count double.
+ *
+ * Whammy gains a fraction of a meter unit at a time, so the meter is tracked in quarter units,
+ * four times as many values as the standard solver's table has. Drain between groups is the
+ * standard model's, scaled to those units, so with whammy and the timing window at zero this
+ * finds the same paths and scores as {@link StarPowerOptimizer}. The finer meter is why this
+ * solves with {@link FrontierSolver}, which only keeps the states a chart reaches, instead of
+ * filling a table over every meter value.
+ */
+public class ExtendedOptimizer {
+
+    static final int METER_STEPS = 4;
+
+    public static StarPowerOptimizer.OptimalPath findOptimalPath(ColumnarChartData chartData, Rules rules) {
+        return findOptimalPath(chartData, rules, METER_STEPS);
+    }
+
+    static StarPowerOptimizer.OptimalPath findOptimalPath(ColumnarChartData chartData, Rules rules, int steps) {
+        if (chartData.noteCount == 0) {
+            return new StarPowerOptimizer.OptimalPath(new ArrayList<>(), 0);
+        }
+        long start = System.nanoTime();
+        List<StarPowerOptimizer.GroupInfo> groups = StarPowerOptimizer.prepareGroups(chartData, rules);
+        FrontierSolver solver = new FrontierSolver(groups, rules, spans(chartData, groups, rules, steps), steps);
+        StarPowerOptimizer.OptimalPath path = solver.run();
+        if (Metrics.enabled()) {
+            Metrics.optimized("EXTENDED", System.nanoTime() - start, groups.size(), solver.states(), solver.states(),
+                    solver.peakMeter() / steps);
+        }
+        return path;
+    }
+
+    static FrontierSolver.Spans spans(ColumnarChartData chartData, List<StarPowerOptimizer.GroupInfo> groups,
+                                      Rules rules, int steps) {
+        int n = groups.size();
+        TempoMap tempoMap = chartData.tempoMap();
+        FrontierSolver.Spans spans = new FrontierSolver.Spans(n);
+        int[] drain = spans.drain;
+        int[] whammy = spans.whammy;
+        int[] squeeze = spans.squeeze;
+
+        int unitsPerBar = rules.drainPerBar * steps;
+        long windowMicros = rules.timingWindowMillis * 1000L;
+        for (int g = 0; g + 1 < n; g++) {
+            int from = groups.get(g).time;
+            int to = groups.get(g + 1).time;
+            drain[g] = groups.get(g).drainUnits * steps;
+            if (windowMicros > 0) {
+                // Meter that lasts from this group into the next one's timing window, on the
+                // same per-gap rounding as the drain, and never more than the whole gap drains.
+                int earliest = tempoMap.tickAt(tempoMap.micros(to) - windowMicros);
+                int needed = earliest <= from ? 1 : Math.max(1, tempoMap.barUnits(from, earliest, unitsPerBar));
+                squeeze[g] = Math.min(needed, Math.max(1, drain[g]));
+            }
+        }
+
+        // One whammy bar: overlapping sustains only count once, so walk the union of the
+        // star power sustains and split it over the spans it covers.
+        double[] beats = new double[n];
+        PhraseIndex.Cursor phrases = chartData.phraseIndex().cursor();
+        int coveredUntil = Integer.MIN_VALUE;
+        int note = 0;
+        for (int g = 0; g + 1 < n; g++) {
+            int time = groups.get(g).time;
+            int end = time;
+            while (note < chartData.noteCount && chartData.noteTimes[note] == time) {
+                end = Math.max(end, time + chartData.noteDurations[note]);
+                note++;
+            }
+            if (end <= time || !phrases.contains(time)) {
+                continue;
+            }
+            for (int span = g, start = Math.max(time, coveredUntil); span + 1 < n && start < end; span++) {
+                int spanEnd = Math.min(end, groups.get(span + 1).time);
+                if (spanEnd > start) {
+                    beats[span] += tempoMap.beats(spanEnd - start);
+                    start = spanEnd;
+                }
+            }
+            coveredUntil = Math.max(coveredUntil, end);
+        }
+        for (int g = 0; g < n; g++) {
+            whammy[g] = (int) (beats[g] * rules.whammyPerBeat * steps);
+        }
+        return spans;
+    }
+
+}
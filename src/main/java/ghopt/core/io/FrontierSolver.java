@@ -0,0 +1,216 @@
+package ghopt.core.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Forward-sweep solver behind {@link ExtendedOptimizer} that only stores the states a chart
+ * actually reaches.
+ *
+ * Each group keeps its frontier: for every star power status and meter that some path reaches,
+ * the best score so far and a pointer to the state it came from, all in flat primitive arrays.
+ * Time and memory grow with the frontier, not with the number of meter values, which is what
+ * lets the extended model measure the meter in quarter units without a four times larger table.
+ * A frontier is at most 3 x (meter values) states; with the standard 0-200 meter a group of the
+ * bundled charts keeps 80-130 of the 402 the table solvers fill. That saving does not pay on the
+ * standard meter, where the per-state bookkeeping makes it about three times slower than a
+ * table sweep, so {@link StarPowerOptimizer} does not use it.
+ *
+ * States are only merged when they have the same status and meter; nothing is pruned by
+ * dominance. Dropping a state for one with a higher score and more meter would prune much
+ * harder, but it is not safe: extra meter while star power is active is spent extending it, and
+ * can leave too little banked for a better activation later.
+ */
+class FrontierSolver {
+
+    private static final byte INACTIVE = 0;
+    private static final byte ACTIVE = 1;
+    private static final byte SQUEEZED = 2; // star power ran out just before this group, which still counts double
+    private static final byte ACTIVATED = 4; // flag: this state was reached by activating at the previous group
+
+    /** Per group, what happens between it and the next group, in meter steps. */
+    static class Spans {
+        final int[] drain;
+        final int[] whammy;
+        final int[] squeeze; // least meter left at the group for star power to last into the timing window of the next
+
+        Spans(int groupCount) {
+            drain = new int[groupCount];
+            whammy = new int[groupCount];
+            squeeze = new int[groupCount];
+            Arrays.fill(squeeze, Integer.MAX_VALUE);
+        }
+
+        /**
+         * The standard model: whole meter units, the groups' own drain, no whammy or squeezes.
+         * Solving with it gives {@link StarPowerOptimizer}'s scores, which the tests check.
+         */
+        static Spans standard(List<StarPowerOptimizer.GroupInfo> groups) {
+            Spans spans = new Spans(groups.size());
+            for (int g = 0; g < groups.size(); g++) {
+                spans.drain[g] = groups.get(g).drainUnits;
+            }
+            return spans;
+        }
+    }
+
+    private final List<StarPowerOptimizer.GroupInfo> groups;
+    private final Rules rules;
+    private final Spans spans;
+    private final int maxMeter;
+    private final int phraseGain;
+    private final int threshold;
+
+    // Every kept state, group by group; groupStart[g] is the first state at group g.
+    private long[] scores = new long[0];
+    private int[] meters = new int[0];
+    private byte[] kinds = new byte[0];
+    private int[] parents = new int[0];
+    private int count;
+    private int peakMeter;
+
+    private final int[] bestBySlot; // per status and meter, the state kept for the group being built or -1
+
+    FrontierSolver(List<StarPowerOptimizer.GroupInfo> groups, Rules rules, Spans spans, int steps) {
+        this.groups = groups;
+        this.rules = rules;
+        this.spans = spans;
+        this.maxMeter = StarPowerOptimizer.MAX_METER * steps;
+        this.phraseGain = rules.phraseGain * steps;
+        this.threshold = rules.activationThreshold * steps;
+        this.bestBySlot = new int[3 * (maxMeter + 1)];
+        Arrays.fill(bestBySlot, -1);
+    }
+
+    /** States kept so far; after {@link #run()}, across the whole chart. */
+    int states() {
+        return count;
+    }
+
+    /** After {@link #run()}: the fullest the meter is between two groups along the path, in meter steps. */
+    int peakMeter() {
+        return peakMeter;
+    }
+
+    StarPowerOptimizer.OptimalPath run() {
+        int n = groups.size();
+        int[] groupStart = new int[n + 2];
+        grow(Math.max(1024, n * 32)); // spares the first few copies
+        reach(0, 0, INACTIVE, -1);
+        groupStart[1] = count;
+
+        for (int g = 0; g < n; g++) {
+            clearSlots(groupStart[g], groupStart[g + 1]);
+            StarPowerOptimizer.GroupInfo group = groups.get(g);
+            long points = StarPowerOptimizer.groupScore(group, rules);
+            for (int s = groupStart[g]; s < groupStart[g + 1]; s++) {
+                step(g, group, points, s);
+            }
+            groupStart[g + 2] = count;
+        }
+
+        int best = groupStart[n];
+        for (int s = groupStart[n] + 1; s < groupStart[n + 1]; s++) {
+            if (scores[s] > scores[best]) {
+                best = s;
+            }
+        }
+
+        List<Integer> activations = new ArrayList<>();
+        int g = n;
+        for (int s = best; parents[s] >= 0; s = parents[s]) {
+            g--;
+            peakMeter = Math.max(peakMeter, meters[s]);
+            if ((kinds[s] & ACTIVATED) != 0) {
+                activations.add(groups.get(g).time);
+            }
+        }
+        Collections.reverse(activations);
+        return new StarPowerOptimizer.OptimalPath(activations, scores[best]);
+    }
+
+    private void step(int g, StarPowerOptimizer.GroupInfo group, long points, int state) {
+        long score = scores[state];
+        int meter = meters[state];
+        int kind = kinds[state] & 3;
+        long doubled = points * rules.starPowerMultiplier;
+
+        if (kind == ACTIVE) {
+            if (group.phraseComplete && rules.phrasesExtendStarPower) {
+                meter = Math.min(maxMeter, meter + phraseGain);
+            }
+            active(g, score + doubled, meter, state, 0);
+            return;
+        }
+
+        if (group.phraseComplete) {
+            meter = Math.min(maxMeter, meter + phraseGain);
+        }
+        long scored = kind == SQUEEZED ? doubled : points;
+        reach(score + scored, meter, INACTIVE, state);
+        if (spans.whammy[g] > 0) {
+            reach(score + scored, Math.min(maxMeter, meter + spans.whammy[g]), INACTIVE, state);
+        }
+        if (meter >= threshold) {
+            active(g, score + doubled, meter, state, ACTIVATED);
+        }
+    }
+
+    // Star power through group g, with or without whammy, then drain to the next group.
+    // Whammy is optional: more meter can stretch star power over groups that would rather be
+    // saved for a later activation.
+    private void active(int g, long score, int meter, int parent, int flags) {
+        drain(g, score, meter, parent, flags);
+        if (rules.phrasesExtendStarPower && spans.whammy[g] > 0) {
+            drain(g, score, Math.min(maxMeter, meter + spans.whammy[g]), parent, flags);
+        }
+    }
+
+    private void drain(int g, long score, int meter, int parent, int flags) {
+        int left = meter - spans.drain[g];
+        if (left > 0) {
+            reach(score, left, (byte) (ACTIVE | flags), parent);
+        } else if (meter >= spans.squeeze[g]) {
+            reach(score, 0, (byte) (SQUEEZED | flags), parent);
+        } else {
+            reach(score, 0, (byte) (INACTIVE | flags), parent);
+        }
+    }
+
+    // Keeps the best state per status and meter, in the order they were first reached.
+    private void reach(long score, int meter, byte kind, int parent) {
+        int slot = (kind & 3) * (maxMeter + 1) + meter;
+        int kept = bestBySlot[slot];
+        if (kept >= 0) {
+            if (score > scores[kept]) {
+                scores[kept] = score;
+                kinds[kept] = kind;
+                parents[kept] = parent;
+            }
+            return;
+        }
+        if (count == scores.length) {
+            grow(count * 2);
+        }
+        scores[count] = score;
+        meters[count] = meter;
+        kinds[count] = kind;
+        parents[count] = parent;
+        bestBySlot[slot] = count++;
+    }
+
+    private void grow(int size) {
+        scores = Arrays.copyOf(scores, size);
+        meters = Arrays.copyOf(meters, size);
+        kinds = Arrays.copyOf(kinds, size);
+        parents = Arrays.copyOf(parents, size);
+    }
+
+    private void clearSlots(int from, int to) {
+        for (int s = from; s < to; s++) {
+            bestBySlot[(kinds[s] & 3) * (maxMeter + 1) + meters[s]] = -1;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ghopt.core.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Re-optimizes a chart that is being edited, reusing the DP tables of the previous version.
+ *
+ * Two tables are kept per group: the backward rows the solver builds (best score from each state
+ * to the end of the chart) and forward rows (best score of the groups before it for reaching each
+ * state, with a pointer to the state it came from). A backward row only depends on the groups
+ * after it and a forward row only on the groups before it, so after an edit every row outside the
+ * changed span is still valid, with rows past the edit moved by however many groups were added or
+ * removed. {@link #update} rebuilds just the backward rows over the changed span, then joins the
+ * two tables at the first changed group.
+ *
+ * {@link #update} leaves the forward rows after the edit and the backward rows before it stale;
+ * {@link #heal} rebuilds them so the next edit is again proportional to its own size. Call it
+ * whenever there is time between edits, as the watch mode does after printing each result.
+ *
+ * The score always matches a full solve under the same {@link Rules}. When two paths tie
+ * exactly, the activations may be the other path.
+ */
+public class IncrementalOptimizer {
+
+    /** About 7 KB per group is retained; longer charts are solved from scratch every time. */
+    public static final int MAX_RETAINED_GROUPS = 20_000;
+
+    private static final int STATES = StarPowerOptimizer.STATES_PER_GROUP;
+
+    private final Rules rules;
+    private List<StarPowerOptimizer.GroupInfo> groups = new ArrayList<>();
+    private final List<long[]> forward = new ArrayList<>();
+    private final List<short[]> from = new ArrayList<>();
+    private List<long[]> backward = new ArrayList<>();
+    private final ArrayDeque<long[]> spareRows = new ArrayDeque<>();
+    private int forwardValid;  // forward rows 0..forwardValid are current
+    private int backwardValid; // backward rows backwardValid..groups.size() are current
+    private int lastRecomputedRows;
+
+    public IncrementalOptimizer() {
+        this(Rules.CLONE_HERO);
+    }
+
+    public IncrementalOptimizer(Rules rules) {
+        this.rules = rules;
+        long[] start = new long[STATES];
+        Arrays.fill(start, Long.MIN_VALUE);
+        start[0] = 0; // meter empty, star power off
+        forward.add(start);
+        from.add(null);
+        backward.add(new long[STATES]); // nothing left to score past the last group
+    }
+
+    /** Solves {@code chartData}, treating it as an edit of the chart passed to the previous call. */
+    public synchronized StarPowerOptimizer.OptimalPath update(ColumnarChartData chartData) {
+        List<StarPowerOptimizer.GroupInfo> next = chartData.noteCount == 0
+                ? new ArrayList<>()
+                : StarPowerOptimizer.prepareGroups(chartData, rules);
+        if (next.size() > MAX_RETAINED_GROUPS) {
+            retarget(new ArrayList<>());
+            lastRecomputedRows = next.size();
+            return StarPowerOptimizer.solve(next, rules, false, StarPowerOptimizer.SolverMode.SPECIALIZED);
+        }
+
+        retarget(next);
+
+        // Rebuild the backward rows between the two valid ranges so they meet at forwardValid.
+        int meet = forwardValid;
+        lastRecomputedRows = Math.max(0, backwardValid - meet);
+        for (int g = backwardValid - 1; g >= meet; g--) {
+            computeBackward(g);
+        }
+        backwardValid = Math.min(backwardValid, meet);
+
+        long[] before = forward.get(meet);
+        long[] after = backward.get(meet);
+        int bestSlot = -1;
+        long bestScore = Long.MIN_VALUE;
+        for (int slot = 0; slot < STATES; slot++) {
+            if (before[slot] != Long.MIN_VALUE && before[slot] + after[slot] > bestScore) {
+                bestScore = before[slot] + after[slot];
+                bestSlot = slot;
+            }
+        }
+
+        return new StarPowerOptimizer.OptimalPath(activations(meet, bestSlot), bestScore);
+    }
+
+    /**
+     * Brings every forward and backward row up to date for the current chart; returns the
+     * number of rows rebuilt.
+     */
+    public synchronized int heal() {
+        int rebuilt = 0;
+        for (int g = forwardValid; g < groups.size(); g++, rebuilt++) {
+            computeForward(g);
+        }
+        forwardValid = groups.size();
+        for (int g = backwardValid - 1; g >= 0; g--, rebuilt++) {
+            computeBackward(g);
+        }
+        backwardValid = 0;
+        return rebuilt;
+    }
+
+    /** Groups whose rows the last {@link #update} had to rebuild. */
+    public synchronized int lastRecomputedRows() {
+        return lastRecomputedRows;
+    }
+
+    public synchronized int groupCount() {
+        return groups.size();
+    }
+
+    // Swaps in the new groups and works out which rows survive the edit.
+    private void retarget(List<StarPowerOptimizer.GroupInfo> next) {
+        int oldCount = groups.size();
+        int newCount = next.size();
+        int limit = Math.min(oldCount, newCount);
+
+        int prefix = 0;
+        while (prefix < limit && StarPowerOptimizer.sameScoring(groups.get(prefix), next.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix &&
+                StarPowerOptimizer.sameScoring(groups.get(oldCount - 1 - suffix), next.get(newCount - 1 - suffix))) {
+            suffix++;
+        }
+
+        // Forward rows up to the first change only saw unchanged groups.
+        forwardValid = Math.min(forwardValid, prefix);
+        while (forward.size() > newCount + 1) {
+            long[] row = forward.remove(forward.size() - 1);
+            if (row != null) {
+                spareRows.add(row);
+            }
+            from.remove(from.size() - 1);
+        }
+        while (forward.size() < newCount + 1) {
+            forward.add(null);
+            from.add(null);
+        }
+
+        // Backward rows from the start of the unchanged tail keep their values at a shifted index.
+        int shift = newCount - oldCount;
+        int newBackwardValid = Math.max(newCount - suffix, backwardValid + shift);
+        List<long[]> moved = new ArrayList<>(Collections.nCopies(newCount + 1, (long[]) null));
+        for (int i = 0; i <= oldCount; i++) {
+            long[] row = backward.get(i);
+            if (i + shift >= newBackwardValid && i + shift <= newCount) {
+                moved.set(i + shift, row);
+            } else if (row != null) {
+                spareRows.add(row);
+            }
+        }
+        backward = moved;
+        backwardValid = newBackwardValid;
+        groups = next;
+    }
+
+    private void computeForward(int g) {
+        if (forward.get(g + 1) == null) {
+            forward.set(g + 1, newRow());
+            from.set(g + 1, new short[STATES]);
+        }
+        StarPowerOptimizer.forwardRow(groups.get(g), rules, forward.get(g), forward.get(g + 1), from.get(g + 1));
+    }
+
+    private void computeBackward(int g) {
+        if (backward.get(g) == null) {
+            backward.set(g, newRow());
+        }
+        StarPowerOptimizer.backwardRow(groups.get(g), rules, backward.get(g + 1), backward.get(g), null, 0);
+    }
+
+    private long[] newRow() {
+        long[] row = spareRows.poll();
+        return row != null ? row : new long[STATES];
+    }
+
+    // Follows the forward pointers back from the meeting row, then the backward decisions on from it.
+    private List<Integer> activations(int meet, int meetSlot) {
+        List<Integer> activations = new ArrayList<>();
+        int slot = meetSlot;
+        for (int g = meet; g > 0; g--) {
+            short origin = from.get(g)[slot];
+            if ((origin & 1) != 0) {
+                activations.add(groups.get(g - 1).time);
+            }
+            slot = origin >> 1;
+        }
+        Collections.reverse(activations);
+
+        slot = meetSlot;
+        for (int g = meet; g < groups.size(); g++) {
+            StarPowerOptimizer.GroupInfo group = groups.get(g);
+            boolean activate = slot < StarPowerOptimizer.METER_STATES &&
+                    StarPowerOptimizer.activates(group, rules, slot, backward.get(g + 1));
+            if (activate) {
+                activations.add(group.time);
+            }
+            slot = StarPowerOptimizer.nextSlot(group, rules, slot, activate);
+        }
+        return activations;
+    }
+}
@@ -0,0 +1,192 @@
+package ghopt.core.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timers and counters for the parse, optimize and render phases.
+ *
+ * Each finished phase produces a {@link Sample}. Samples go to the installed {@link Sink}, to any
+ * {@link Collector} open on the thread that ran the phase, and to Flight Recorder as
+ * {@code ghopt.Phase} events. With none of those listening, a phase skips gathering its counters.
+ */
+public class Metrics {
+
+    public enum Phase { PARSE, OPTIMIZE, RENDER }
+
+    /** One finished phase. Counters that don't apply to the phase are 0. */
+    public static class Sample {
+        public final Phase phase;
+        public final String detail; // chart file for PARSE, solver for OPTIMIZE, image format for RENDER
+        public final long nanos;
+        public final long bytes; // read for PARSE, written for RENDER
+        public final int noteCount;
+        public final int groupCount;
+        // DP cells the solver filled: its whole table for ITERATIVE and SPECIALIZED (a fixed
+        // number per group), only the states a path reaches for RECURSIVE and EXTENDED.
+        public final long cellsComputed;
+        public final long memoSize; // states (or decision bits) kept to replay the path
+        public final int peakMeter;
+
+        Sample(Phase phase, String detail, long nanos, long bytes, int noteCount, int groupCount,
+               long cellsComputed, long memoSize, int peakMeter) {
+            this.phase = phase;
+            this.detail = detail;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.noteCount = noteCount;
+            this.groupCount = groupCount;
+            this.cellsComputed = cellsComputed;
+            this.memoSize = memoSize;
+            this.peakMeter = peakMeter;
+        }
+
+        @Override
+        public String toString() {
+            return "Sample{" +
+                    "phase=" + phase +
+                    ", detail=" + detail +
+                    ", nanos=" + nanos +
+                    ", bytes=" + bytes +
+                    ", noteCount=" + noteCount +
+                    ", groupCount=" + groupCount +
+                    ", cellsComputed=" + cellsComputed +
+                    ", memoSize=" + memoSize +
+                    ", peakMeter=" + peakMeter +
+                    '}';
+        }
+    }
+
+    /** Receives samples from every thread; implementations must be thread-safe. */
+    public interface Sink {
+        void record(Sample sample);
+    }
+
+    /** Gathers the samples of phases run on the thread that opened it, until closed. */
+    public static class Collector implements AutoCloseable {
+        private final Collector outer;
+        private final List<Sample> samples = new ArrayList<>();
+
+        private Collector(Collector outer) {
+            this.outer = outer;
+        }
+
+        public List<Sample> samples() {
+            return samples;
+        }
+
+        @Override
+        public void close() {
+            COLLECTORS.set(outer);
+        }
+    }
+
+    private static final ThreadLocal<Collector> COLLECTORS = new ThreadLocal<>();
+    private static volatile Sink sink;
+
+    public static void setSink(Sink newSink) {
+        sink = newSink;
+    }
+
+    public static Collector collect() {
+        Collector collector = new Collector(COLLECTORS.get());
+        COLLECTORS.set(collector);
+        return collector;
+    }
+
+    /** Whether a finished phase would be recorded anywhere; callers skip gathering counters if not. */
+    static boolean enabled() {
+        return sink != null || COLLECTORS.get() != null || Jfr.recording();
+    }
+
+    static void parsed(String chartFile, long nanos, long bytes, int noteCount) {
+        record(new Sample(Phase.PARSE, chartFile, nanos, bytes, noteCount, 0, 0, 0, 0));
+    }
+
+    static void optimized(String solver, long nanos, int groupCount, long cellsComputed, long memoSize, int peakMeter) {
+        record(new Sample(Phase.OPTIMIZE, solver, nanos, 0, 0, groupCount, cellsComputed, memoSize, peakMeter));
+    }
+
+    static void rendered(String format, long nanos, long bytes, int noteCount) {
+        record(new Sample(Phase.RENDER, format, nanos, bytes, noteCount, 0, 0, 0, 0));
+    }
+
+    private static void record(Sample sample) {
+        Sink current = sink;
+        if (current != null) {
+            current.record(sample);
+        }
+        for (Collector collector = COLLECTORS.get(); collector != null; collector = collector.outer) {
+            collector.samples.add(sample);
+        }
+        if (Jfr.recording()) {
+            Jfr.commit(sample);
+        }
+    }
+
+    // Samples are recorded after the phase ends, so its length is a field rather than the event's duration.
+    @Name("ghopt.Phase")
+    @Label("Optimizer Phase")
+    @Category("Star Power Optimizer")
+    @Description("A finished parse, optimize or render phase")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Detail")
+        String detail;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Notes")
+        int noteCount;
+        @Label("Groups")
+        int groupCount;
+        @Label("Cells Computed")
+        long cellsComputed;
+        @Label("Memo Size")
+        long memoSize;
+        @Label("Peak Meter")
+        int peakMeter;
+    }
+
+    // Everything that touches jdk.jfr, so that runs without a recording never load Flight Recorder
+    // (loading the event classes alone pulls in about a hundred of its classes).
+    private static class Jfr {
+        static boolean recording() {
+            return FlightRecorder.isInitialized() && Holder.ENABLED.isEnabled();
+        }
+
+        static void commit(Sample sample) {
+            PhaseEvent event = new PhaseEvent();
+            if (event.shouldCommit()) {
+                event.phase = sample.phase.name();
+                event.detail = sample.detail;
+                event.elapsed = sample.nanos;
+                event.bytes = sample.bytes;
+                event.noteCount = sample.noteCount;
+                event.groupCount = sample.groupCount;
+                event.cellsComputed = sample.cellsComputed;
+                event.memoSize = sample.memoSize;
+                event.peakMeter = sample.peakMeter;
+                event.commit();
+            }
+        }
+
+        // One instance to ask whether recordings want the event, without allocating per check.
+        private static class Holder {
+            static final PhaseEvent ENABLED = new PhaseEvent();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package ghopt.core.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Store for {@link StarPowerOptimizer.OptimalPath} results.
+ *
+ * Keys combine a hash of the chart's contents with {@link Rules#fingerprint()}, so an edited
+ * chart, another ruleset or a change to the scoring rules never returns a stale path. Results
+ * live in an in-memory LRU, backed by an optional directory of small text entries that survives
+ * restarts.
+ *
+ * Entries for an edited chart or an old fingerprint are never asked for again, so the directory
+ * is an LRU too: past {@code maxDiskEntries} files, the least recently written or read are deleted
+ * until a quarter of the room is free again.
+ */
+public class OptimalPathCache {
+
+    public static final int DEFAULT_DISK_ENTRIES = 20_000;
+
+    private final Map<String, StarPowerOptimizer.OptimalPath> memory;
+    private final Path diskDir;
+    private final int maxDiskEntries;
+    private final Object diskLock = new Object();
+    private int diskEntries = -1; // entry files in diskDir, counted on the first put
+
+    public OptimalPathCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    public OptimalPathCache(int maxEntries, Path diskDir) {
+        this(maxEntries, diskDir, DEFAULT_DISK_ENTRIES);
+    }
+
+    public OptimalPathCache(int maxEntries, Path diskDir, int maxDiskEntries) {
+        if (maxDiskEntries < 1) {
+            throw new IllegalArgumentException("maxDiskEntries must be at least 1");
+        }
+        this.diskDir = diskDir;
+        this.maxDiskEntries = maxDiskEntries;
+        this.memory = new LinkedHashMap<String, StarPowerOptimizer.OptimalPath>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StarPowerOptimizer.OptimalPath> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** Returns the cached Clone Hero path for this chart, solving it on a miss. */
+    public StarPowerOptimizer.OptimalPath findOptimalPath(ColumnarChartData chartData) throws IOException {
+        return findOptimalPath(chartData, Rules.CLONE_HERO);
+    }
+
+    /** Returns the cached path for this chart under {@code rules}, solving it on a miss. */
+    public StarPowerOptimizer.OptimalPath findOptimalPath(ColumnarChartData chartData, Rules rules) throws IOException {
+        return findOptimalPath(chartData, rules, false);
+    }
+
+    /** As above; {@code extended} paths come from {@link ExtendedOptimizer} and are keyed apart. */
+    public StarPowerOptimizer.OptimalPath findOptimalPath(ColumnarChartData chartData, Rules rules, boolean extended)
+            throws IOException {
+        String key = key(chartData, rules, extended);
+        StarPowerOptimizer.OptimalPath path = get(key);
+        if (path == null) {
+            path = extended
+                    ? ExtendedOptimizer.findOptimalPath(chartData, rules)
+                    : StarPowerOptimizer.findOptimalPath(chartData, rules);
+            put(key, path);
+        }
+        return path;
+    }
+
+    public String key(ColumnarChartData chartData) {
+        return key(chartData, Rules.CLONE_HERO);
+    }
+
+    public String key(ColumnarChartData chartData, Rules rules) {
+        return key(chartHash(chartData), rules.fingerprint());
+    }
+
+    public String key(ColumnarChartData chartData, Rules rules, boolean extended) {
+        return extended
+                ? key(chartHash(chartData), rules.fingerprint() + ";extended=" + ExtendedOptimizer.METER_STEPS)
+                : key(chartData, rules);
+    }
+
+    static String key(String chartHash, String rulesFingerprint) {
+        return ChartCache.sha256Hex((chartHash + "|" + rulesFingerprint).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Content hash of the parsed chart, independent of where the file lives; see {@link ColumnarChartData#contentHash()}. */
+    public static String chartHash(ColumnarChartData chartData) {
+        return chartData.contentHash();
+    }
+
+    /** The cached path, or null. Each call returns its own copy, so callers may modify it. */
+    public StarPowerOptimizer.OptimalPath get(String key) throws IOException {
+        synchronized (memory) {
+            StarPowerOptimizer.OptimalPath path = memory.get(key);
+            if (path != null) {
+                return copy(path);
+            }
+        }
+        if (diskDir == null) {
+            return null;
+        }
+
+        Path entry = diskDir.resolve(key + ".txt");
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        StarPowerOptimizer.OptimalPath path;
+        try {
+            path = parseEntry(Files.readAllLines(entry, StandardCharsets.UTF_8));
+            if (path == null) {
+                return null;
+            }
+            // The modification time is the entry's last use, which eviction goes by.
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            return null; // evicted since the check above
+        }
+        synchronized (memory) {
+            memory.put(key, path);
+        }
+        return copy(path);
+    }
+
+    public void put(String key, StarPowerOptimizer.OptimalPath path) throws IOException {
+        StarPowerOptimizer.OptimalPath stored = copy(path);
+        synchronized (memory) {
+            memory.put(key, stored);
+        }
+        if (diskDir == null) {
+            return;
+        }
+
+        Files.createDirectories(diskDir);
+        Path entry = diskDir.resolve(key + ".txt");
+        boolean added = !Files.exists(entry);
+        Path temp = Files.createTempFile(diskDir, "path", ".tmp");
+        try {
+            StringBuilder activations = new StringBuilder();
+            for (int time : stored.activationTimes) {
+                if (activations.length() > 0) activations.append(' ');
+                activations.append(time);
+            }
+            Files.write(temp, List.of(String.valueOf(stored.totalScore), activations.toString()), StandardCharsets.UTF_8);
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (added) {
+            evictFromDisk();
+        }
+    }
+
+    // Deleting down to three quarters of the cap means the directory is listed once per
+    // maxDiskEntries / 4 new entries, not on every put once it is full.
+    private void evictFromDisk() throws IOException {
+        synchronized (diskLock) {
+            diskEntries = diskEntries < 0 ? countEntries() : diskEntries + 1;
+            if (diskEntries <= maxDiskEntries) {
+                return;
+            }
+
+            Map<Path, Long> lastUsed = new HashMap<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(diskDir, "*.txt")) {
+                for (Path entry : entries) {
+                    lastUsed.put(entry, Files.getLastModifiedTime(entry).toMillis());
+                }
+            }
+            List<Path> oldestFirst = new ArrayList<>(lastUsed.keySet());
+            oldestFirst.sort((a, b) -> Long.compare(lastUsed.get(a), lastUsed.get(b)));
+            int evict = oldestFirst.size() - maxDiskEntries * 3 / 4;
+            for (int i = 0; i < evict; i++) {
+                Files.deleteIfExists(oldestFirst.get(i));
+            }
+            diskEntries = oldestFirst.size() - Math.max(0, evict);
+        }
+    }
+
+    private int countEntries() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(diskDir, "*.txt")) {
+            for (Path ignored : entries) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int memorySize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    private static StarPowerOptimizer.OptimalPath parseEntry(List<String> lines) {
+        if (lines.size() != 2) {
+            return null;
+        }
+        try {
+            long totalScore = Long.parseLong(lines.get(0).trim());
+            List<Integer> activations = new ArrayList<>();
+            for (String token : lines.get(1).trim().split(" ")) {
+                if (!token.isEmpty()) {
+                    activations.add(Integer.parseInt(token));
+                }
+            }
+            return new StarPowerOptimizer.OptimalPath(activations, totalScore);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static StarPowerOptimizer.OptimalPath copy(StarPowerOptimizer.OptimalPath path) {
+        // OptimalPath is mutable, so callers never share the cached instance.
+        return new StarPowerOptimizer.OptimalPath(path.activationTimes, path.totalScore);
+    }
+}
@@ -0,0 +1,170 @@
+package ghopt.core.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * What happens along a star power path: phrases gained, activations, star power running out and
+ * the running score after every group.
+ *
+ * Events go into a ring of primitive arrays sized up front, so recording one is a few array
+ * stores and a long chart keeps its latest events rather than growing without bound. Nothing is
+ * formatted until a trace is written, as JSON lines (one event per line, stable across runs so
+ * two versions' traces can be diffed) or as fixed-size binary records.
+ */
+public class PathTrace {
+
+    public enum Event { PHRASE, ACTIVATE, SP_END, GROUP }
+
+    /**
+     * Most events a trace keeps; older ones are overwritten once it is full. Traces are sized to
+     * the path, so this only bounds charts of millions of groups.
+     */
+    public static final int MAX_CAPACITY = 1 << 22;
+
+    private static final int MAGIC = 0x47485452; // "GHTR"
+    private static final int VERSION = 1;
+    private static final Event[] EVENTS = Event.values();
+
+    private final byte[] events;
+    private final int[] groups;
+    private final int[] times;
+    private final int[] meters;
+    private final long[] scores;
+    private final int mask;
+    private long recorded;
+    private long droppedBefore; // dropped by the trace this one was read from
+
+    /** Room for at least {@code capacity} events, rounded up to a power of two. */
+    public PathTrace(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Trace capacity must be 1 to " + MAX_CAPACITY + ": " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        events = new byte[size];
+        groups = new int[size];
+        times = new int[size];
+        meters = new int[size];
+        scores = new long[size];
+        mask = size - 1;
+    }
+
+    void record(Event event, int group, int time, int meter, long score) {
+        int i = (int) recorded & mask;
+        events[i] = (byte) event.ordinal();
+        groups[i] = group;
+        times[i] = time;
+        meters[i] = meter;
+        scores[i] = score;
+        recorded++;
+    }
+
+    /** Events kept, oldest first from index 0. */
+    public int size() {
+        return (int) Math.min(recorded, events.length);
+    }
+
+    /** Events overwritten because the trace filled up. */
+    public long dropped() {
+        return droppedBefore + recorded - size();
+    }
+
+    public Event event(int index) {
+        return EVENTS[events[slot(index)]];
+    }
+
+    public int group(int index) {
+        return groups[slot(index)];
+    }
+
+    public int time(int index) {
+        return times[slot(index)];
+    }
+
+    /** The meter (0-200) after the event. */
+    public int meter(int index) {
+        return meters[slot(index)];
+    }
+
+    /** The path's score so far, including the group the event belongs to once it is scored. */
+    public long score(int index) {
+        return scores[slot(index)];
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Event " + index + " of " + size());
+        }
+        return (int) (recorded - size() + index) & mask;
+    }
+
+    /** One line per event; a trace that dropped events starts with a line saying how many. */
+    public void writeJsonLines(Appendable out) throws IOException {
+        if (dropped() > 0) {
+            out.append("{\"dropped\": ").append(String.valueOf(dropped())).append("}\n");
+        }
+        StringBuilder line = new StringBuilder(96);
+        for (int i = 0; i < size(); i++) {
+            line.setLength(0);
+            line.append("{\"event\": \"").append(event(i).name().toLowerCase())
+                    .append("\", \"group\": ").append(group(i))
+                    .append(", \"time\": ").append(time(i))
+                    .append(", \"meter\": ").append(meter(i))
+                    .append(", \"score\": ").append(score(i))
+                    .append("}\n");
+            out.append(line);
+        }
+    }
+
+    /** A short header, then 21 bytes per event: event, group, time, meter and score. */
+    public void writeBinary(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(size());
+        data.writeLong(dropped());
+        for (int i = 0; i < size(); i++) {
+            int s = slot(i);
+            data.writeByte(events[s]);
+            data.writeInt(groups[s]);
+            data.writeInt(times[s]);
+            data.writeInt(meters[s]);
+            data.writeLong(scores[s]);
+        }
+        data.flush();
+    }
+
+    public static PathTrace readBinary(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a path trace");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported path trace version: " + version);
+        }
+        int size = data.readInt();
+        long dropped = data.readLong();
+        if (size < 0 || size > MAX_CAPACITY || dropped < 0) {
+            throw new IOException("Corrupt path trace header");
+        }
+        PathTrace trace = new PathTrace(Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            int event = data.readUnsignedByte();
+            if (event >= EVENTS.length) {
+                throw new IOException("Unknown path trace event: " + event);
+            }
+            trace.record(EVENTS[event], data.readInt(), data.readInt(), data.readInt(), data.readLong());
+        }
+        trace.droppedBefore = dropped;
+        return trace;
+    }
+}
@@ -0,0 +1,109 @@
+package ghopt.core.io;
+
+/**
+ * Star power phrase lookup built once per {@link ColumnarChartData}.
+ *
+ * Keeps the phrases sorted by start for sweeps that need each phrase on its own (phrase
+ * completion), plus the union of all phrases as disjoint sorted intervals for "is tick t inside
+ * a phrase" queries. Random queries are a binary search; a {@link Cursor} answers
+ * non-decreasing queries in O(1) amortized.
+ */
+public class PhraseIndex {
+
+    private final int[] phraseStarts;
+    private final int[] phraseEnds;
+    private final int phraseCount;
+
+    private final int[] unionStarts;
+    private final int[] unionEnds;
+    private final int unionCount;
+
+    PhraseIndex(int[] phraseStarts, int[] phraseEnds, int phraseCount) {
+        this.phraseStarts = phraseStarts;
+        this.phraseEnds = phraseEnds;
+        this.phraseCount = phraseCount;
+
+        int[] starts = new int[phraseCount];
+        int[] ends = new int[phraseCount];
+        int count = 0;
+        for (int i = 0; i < phraseCount; i++) {
+            int start = phraseStarts[i];
+            int end = phraseEnds[i];
+            if (end < start) {
+                continue; // never contains a tick
+            }
+            if (count > 0 && start <= ends[count - 1]) {
+                ends[count - 1] = Math.max(ends[count - 1], end);
+            } else {
+                starts[count] = start;
+                ends[count] = end;
+                count++;
+            }
+        }
+        this.unionStarts = starts;
+        this.unionEnds = ends;
+        this.unionCount = count;
+    }
+
+    public static PhraseIndex of(ColumnarChartData chartData) {
+        return new PhraseIndex(chartData.phraseStarts, chartData.phraseEnds, chartData.phraseCount);
+    }
+
+    public int phraseCount() {
+        return phraseCount;
+    }
+
+    /** Start of the i-th phrase in start order. */
+    public int phraseStart(int i) {
+        return phraseStarts[i];
+    }
+
+    public int phraseEnd(int i) {
+        return phraseEnds[i];
+    }
+
+    /** True if some phrase has {@code start <= tick <= end}. */
+    public boolean contains(int tick) {
+        int lo = 0;
+        int hi = unionCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (unionEnds[mid] < tick) {
+                lo = mid + 1;
+            } else if (unionStarts[mid] > tick) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Sweeping lookup for ticks queried in non-decreasing order. */
+    public class Cursor {
+        private int interval;
+
+        public boolean contains(int tick) {
+            while (interval < unionCount && unionEnds[interval] < tick) {
+                interval++;
+            }
+            return interval < unionCount && unionStarts[interval] <= tick;
+        }
+
+        /** Restarts the sweep at the first interval that can contain {@code tick}. */
+        public void seek(int tick) {
+            int lo = 0;
+            int hi = unionCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (unionEnds[mid] < tick) lo = mid + 1;
+                else hi = mid;
+            }
+            interval = lo;
+        }
+    }
+}
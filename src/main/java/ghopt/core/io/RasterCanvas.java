@@ -0,0 +1,297 @@
+package ghopt.core.io;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The FAST {@link ChartRenderer.Quality} canvas: writes straight into a TYPE_INT_ARGB strip.
+ *
+ * Rectangles and horizontal/vertical lines become row fills, and note heads, star notes and
+ * label glyphs are copied from sprites rasterized once per colour and size, so drawing a note
+ * is a handful of array copies. Nothing is antialiased except the sprites themselves, which
+ * are drawn with the high-quality settings when first used. Shapes with no fast path go
+ * through a plain (non-antialiased) Graphics2D on the same strip.
+ *
+ * Blending assumes the strip is opaque under every translucent fill, which holds because each
+ * layer starts with a white background.
+ */
+class RasterCanvas implements ChartCanvas {
+
+    private static final int KIND_OVAL = 0;
+    private static final int KIND_STAR = 1;
+    private static final Font LABEL_FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+    private static final int MAX_SPRITE_SIZE = 0x7F;
+    private static final Map<Long, Sprite> SPRITES = new ConcurrentHashMap<>();
+    private static final Map<Long, Sprite> GLYPHS = new ConcurrentHashMap<>();
+
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+    private final int originY;
+    private Color color = Color.BLACK;
+    private int argb = 0xFF000000;
+    private Graphics2D fallback;
+
+    /** {@code originY} is the whole-image y of the strip's top row. */
+    RasterCanvas(BufferedImage strip, int originY) {
+        this.image = strip;
+        this.pixels = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+        this.width = strip.getWidth();
+        this.height = strip.getHeight();
+        this.originY = originY;
+    }
+
+    void dispose() {
+        if (fallback != null) {
+            fallback.dispose();
+            fallback = null;
+        }
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.color = color;
+        this.argb = color.getRGB();
+    }
+
+    @Override
+    public void fillRect(int x, int y, int w, int h) {
+        int x0 = Math.max(0, x);
+        int x1 = Math.min(width, x + w);
+        int y0 = Math.max(0, y - originY);
+        int y1 = Math.min(height, y - originY + h);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        int alpha = argb >>> 24;
+        if (alpha == 255) {
+            for (int row = y0; row < y1; row++) {
+                Arrays.fill(pixels, row * width + x0, row * width + x1, argb);
+            }
+        } else if (alpha != 0) {
+            for (int row = y0; row < y1; row++) {
+                for (int i = row * width + x0, end = row * width + x1; i < end; i++) {
+                    pixels[i] = blend(pixels[i], argb, alpha);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void drawRect(int x, int y, int w, int h, float strokeWidth) {
+        // The outline is centred on the rectangle's edges, like a BasicStroke of the same width.
+        int s = Math.max(1, Math.round(strokeWidth));
+        int left = x - s / 2;
+        int top = y - s / 2;
+        fillRect(left, top, w + s, s);
+        fillRect(left, top + h, w + s, s);
+        fillRect(left, top + s, s, h - s);
+        fillRect(left + w, top + s, s, h - s);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        if (y1 == y2) {
+            fillRect(Math.min(x1, x2), y1, Math.abs(x2 - x1) + 1, 1);
+        } else if (x1 == x2) {
+            fillRect(x1, Math.min(y1, y2), 1, Math.abs(y2 - y1) + 1);
+        } else {
+            fallback().drawLine(x1, y1, x2, y2);
+        }
+    }
+
+    @Override
+    public void drawString(String text, int x, int y) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Sprite glyph = GLYPHS.computeIfAbsent(((long) c << 32) | (argb & 0xFFFFFFFFL),
+                    k -> Sprite.glyph(c, color));
+            blit(glyph, x, y);
+            x += glyph.advance;
+        }
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        fallback().fillOval(x, y, w, h);
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        fallback().fill(shape);
+    }
+
+    @Override
+    public void draw(Shape shape, float strokeWidth) {
+        Graphics2D g = fallback();
+        g.setStroke(new BasicStroke(strokeWidth));
+        g.draw(shape);
+    }
+
+    @Override
+    public void noteHead(int x, int y, int size, Color color) {
+        if (size > MAX_SPRITE_SIZE) {
+            ChartCanvas.super.noteHead(x, y, size, color);
+            return;
+        }
+        long key = spriteKey(KIND_OVAL, size, 0, color.getRGB(), 0);
+        blit(SPRITES.computeIfAbsent(key, k -> Sprite.oval(size, color)), x, y);
+    }
+
+    @Override
+    public void starNote(int cx, int cy, int outerRadius, int innerRadius, Color fill, Color outline) {
+        if (outerRadius > MAX_SPRITE_SIZE || innerRadius > MAX_SPRITE_SIZE) {
+            ChartCanvas.super.starNote(cx, cy, outerRadius, innerRadius, fill, outline);
+            return;
+        }
+        long key = spriteKey(KIND_STAR, outerRadius, innerRadius, fill.getRGB(), outline.getRGB());
+        blit(SPRITES.computeIfAbsent(key, k -> Sprite.star(outerRadius, innerRadius, fill, outline)), cx, cy);
+    }
+
+    /** Copies {@code sprite} with its anchor at whole-image (x, y). */
+    private void blit(Sprite sprite, int x, int y) {
+        int left = x - sprite.anchorX;
+        int top = y - originY - sprite.anchorY;
+        int[] runs = sprite.runs;
+        for (int r = 0; r < runs.length; r += 4) {
+            int row = top + runs[r];
+            if (row < 0 || row >= height) {
+                continue;
+            }
+            int from = Math.max(0, -(left + runs[r + 1]));
+            int to = Math.min(runs[r + 2], width - (left + runs[r + 1]));
+            if (from >= to) {
+                continue;
+            }
+            int src = runs[r] * sprite.width + runs[r + 1] + from;
+            int dst = row * width + left + runs[r + 1] + from;
+            if (runs[r + 3] == 1) {
+                System.arraycopy(sprite.pixels, src, pixels, dst, to - from);
+            } else {
+                for (int i = from; i < to; i++, src++, dst++) {
+                    int p = sprite.pixels[src];
+                    pixels[dst] = blend(pixels[dst], p, p >>> 24);
+                }
+            }
+        }
+    }
+
+    private Graphics2D fallback() {
+        if (fallback == null) {
+            fallback = image.createGraphics();
+            fallback.translate(0, -originY);
+        }
+        fallback.setColor(color);
+        return fallback;
+    }
+
+    /** Source-over of a non-premultiplied colour onto an opaque pixel. */
+    private static int blend(int dst, int src, int alpha) {
+        int inverse = 255 - alpha;
+        int r = (((src >> 16) & 0xFF) * alpha + ((dst >> 16) & 0xFF) * inverse + 127) / 255;
+        int g = (((src >> 8) & 0xFF) * alpha + ((dst >> 8) & 0xFF) * inverse + 127) / 255;
+        int b = ((src & 0xFF) * alpha + (dst & 0xFF) * inverse + 127) / 255;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    // kind:1 | a:7 | b:7 | fill rgb:24 | outline rgb:24; note colours are opaque
+    private static long spriteKey(int kind, int a, int b, int fill, int outline) {
+        return ((long) kind << 62) | ((long) a << 55) | ((long) b << 48)
+                | ((long) (fill & 0xFFFFFF) << 24) | (outline & 0xFFFFFF);
+    }
+
+    /**
+     * A pre-rasterized ARGB image split into runs of fully opaque pixels, which are copied as
+     * is, and runs of partly transparent ones, which are blended. Fully transparent pixels are
+     * skipped.
+     */
+    static class Sprite {
+        final int width;
+        final int[] pixels;
+        final int anchorX;
+        final int anchorY;
+        final int advance;
+        final int[] runs; // (row, x, length, opaque) quadruples
+
+        Sprite(BufferedImage image, int anchorX, int anchorY, int advance) {
+            this.width = image.getWidth();
+            this.pixels = image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
+            this.anchorX = anchorX;
+            this.anchorY = anchorY;
+            this.advance = advance;
+
+            int[] found = new int[64];
+            int count = 0;
+            for (int row = 0; row < image.getHeight(); row++) {
+                int x = 0;
+                while (x < width) {
+                    int alpha = pixels[row * width + x] >>> 24;
+                    if (alpha == 0) {
+                        x++;
+                        continue;
+                    }
+                    boolean opaque = alpha == 255;
+                    int start = x;
+                    while (x < width) {
+                        int a = pixels[row * width + x] >>> 24;
+                        if (a == 0 || (a == 255) != opaque) break;
+                        x++;
+                    }
+                    if (count + 4 > found.length) found = Arrays.copyOf(found, found.length * 2);
+                    found[count++] = row;
+                    found[count++] = start;
+                    found[count++] = x - start;
+                    found[count++] = opaque ? 1 : 0;
+                }
+            }
+            this.runs = Arrays.copyOf(found, count);
+        }
+
+        /** Anchored at the top-left corner of the circle's bounding box, like fillOval. */
+        static Sprite oval(int size, Color color) {
+            BufferedImage image = new BufferedImage(size + 2, size + 2, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(color);
+            g.fillOval(1, 1, size, size);
+            g.dispose();
+            return new Sprite(image, 1, 1, 0);
+        }
+
+        /** Anchored at the star's centre. */
+        static Sprite star(int outerRadius, int innerRadius, Color fill, Color outline) {
+            int pad = outerRadius + 2;
+            BufferedImage image = new BufferedImage(2 * pad + 1, 2 * pad + 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            new ChartCanvas.GraphicsCanvas(g).starNote(pad, pad, outerRadius, innerRadius, fill, outline);
+            g.dispose();
+            return new Sprite(image, pad, pad, 0);
+        }
+
+        /** Anchored at the glyph's origin on the baseline, like drawString. */
+        static Sprite glyph(char c, Color color) {
+            BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D pg = probe.createGraphics();
+            FontMetrics metrics = pg.getFontMetrics(LABEL_FONT);
+            pg.dispose();
+
+            int pad = 2;
+            int ascent = metrics.getMaxAscent();
+            BufferedImage image = new BufferedImage(metrics.charWidth(c) + 2 * pad,
+                    ascent + metrics.getMaxDescent() + pad, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setFont(LABEL_FONT);
+            g.setColor(color);
+            g.drawString(String.valueOf(c), pad, ascent);
+            g.dispose();
+            return new Sprite(image, pad, ascent, metrics.charWidth(c));
+        }
+    }
+}
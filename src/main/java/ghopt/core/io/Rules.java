@@ -0,0 +1,102 @@
+package ghopt.core.io;
+
+/**
+ * A game's scoring and star power rules, as {@link StarPowerOptimizer} applies them.
+ *
+ * Meter amounts are in units of the optimizer's 0-200 meter, so 50 is 25% of a full bar.
+ * {@link #CLONE_HERO} and {@link #GUITAR_HERO} are the two supported games; the optimizer picks
+ * a solver specialized for each (see {@link StarPowerOptimizer.SolverMode#SPECIALIZED}). Whammy
+ * and the timing window only matter to {@link ExtendedOptimizer}.
+ */
+public class Rules {
+
+    public static final Rules CLONE_HERO = new Rules("clonehero", 50, 25, 10, 4, 2, 50, 100, 25, true, 6.25, 70);
+    /** Classic Guitar Hero: phrases completed (or sustains whammied) while star power is active are lost. */
+    public static final Rules GUITAR_HERO = new Rules("guitarhero", 50, 25, 10, 4, 2, 50, 100, 25, false, 6.25, 70);
+
+    // Bump when a solver or group-building change alters results for the same chart and rules.
+    static final int SCORING_VERSION = 4;
+
+    public final String name;
+    public final int notePoints;
+    public final int sustainPointsPerBeat; // per note, rounded up
+    public final int notesPerMultiplierStep; // note groups hit before the base multiplier goes up by one
+    public final int maxMultiplier;
+    public final int starPowerMultiplier;
+    public final int phraseGain;
+    public final int activationThreshold;
+    public final int drainPerBar;
+    public final boolean phrasesExtendStarPower;
+    public final double whammyPerBeat; // meter gained per beat of a whammied star power sustain
+    public final int timingWindowMillis; // how early or late a note can be hit
+
+    public Rules(String name, int notePoints, int sustainPointsPerBeat, int notesPerMultiplierStep,
+                 int maxMultiplier, int starPowerMultiplier, int phraseGain, int activationThreshold,
+                 int drainPerBar, boolean phrasesExtendStarPower, double whammyPerBeat, int timingWindowMillis) {
+        if (notesPerMultiplierStep <= 0 || maxMultiplier <= 0 || starPowerMultiplier <= 0) {
+            throw new IllegalArgumentException("Multipliers must be positive: " + name);
+        }
+        if (phraseGain <= 0 || phraseGain > StarPowerOptimizer.MAX_METER ||
+                activationThreshold <= 0 || activationThreshold > StarPowerOptimizer.MAX_METER ||
+                drainPerBar < 0 || whammyPerBeat < 0 || timingWindowMillis < 0) {
+            throw new IllegalArgumentException("Meter amounts must fit the 0-" + StarPowerOptimizer.MAX_METER +
+                    " meter: " + name);
+        }
+        this.name = name;
+        this.notePoints = notePoints;
+        this.sustainPointsPerBeat = sustainPointsPerBeat;
+        this.notesPerMultiplierStep = notesPerMultiplierStep;
+        this.maxMultiplier = maxMultiplier;
+        this.starPowerMultiplier = starPowerMultiplier;
+        this.phraseGain = phraseGain;
+        this.activationThreshold = activationThreshold;
+        this.drainPerBar = drainPerBar;
+        this.phrasesExtendStarPower = phrasesExtendStarPower;
+        this.whammyPerBeat = whammyPerBeat;
+        this.timingWindowMillis = timingWindowMillis;
+    }
+
+    /** {@link #CLONE_HERO} or {@link #GUITAR_HERO} by name ("ch"/"gh" also work). */
+    public static Rules named(String name) {
+        switch (name.toLowerCase()) {
+            case "clonehero":
+            case "ch":
+                return CLONE_HERO;
+            case "guitarhero":
+            case "gh":
+                return GUITAR_HERO;
+            default:
+                throw new IllegalArgumentException("Unknown rules: " + name + " (expected clonehero or guitarhero)");
+        }
+    }
+
+    /** Base multiplier for the {@code comboCount}-th note group of an unbroken combo, counting from 0. */
+    public int baseMultiplier(int comboCount) {
+        return Math.min(maxMultiplier, 1 + comboCount / notesPerMultiplierStep);
+    }
+
+    /**
+     * Identifies everything besides the chart that affects an {@link StarPowerOptimizer.OptimalPath},
+     * so cached results can be invalidated when the rules or the solver change.
+     */
+    public String fingerprint() {
+        return "v" + SCORING_VERSION +
+                ";rules=" + name +
+                ";note=" + notePoints +
+                ";sustain=" + sustainPointsPerBeat +
+                ";combo=" + notesPerMultiplierStep + "x" + maxMultiplier +
+                ";sp=" + starPowerMultiplier +
+                ";maxMeter=" + StarPowerOptimizer.MAX_METER +
+                ";phrase=" + phraseGain +
+                ";threshold=" + activationThreshold +
+                ";drain=" + drainPerBar +
+                ";extend=" + phrasesExtendStarPower +
+                ";whammy=" + whammyPerBeat +
+                ";window=" + timingWindowMillis;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
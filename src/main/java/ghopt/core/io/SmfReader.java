@@ -0,0 +1,243 @@
+package ghopt.core.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pull-style reader for Standard MIDI Files.
+ *
+ * Walks the raw MTrk chunks of the file's bytes without building any MidiEvent/MidiMessage objects.
+ * Each track's name is found before its events are decoded, so callers can skip whole tracks
+ * (drums, vocals, ...) by chunk length. Events are exposed through the accessors below and are
+ * only valid until the next call to {@link #nextEvent()}.
+ */
+class SmfReader {
+
+    static final int META = 0xFF;
+    static final int SYSEX = 0xF0;
+
+    private final ByteBuffer bytes;
+    private final int resolution;
+    private final int trackCount;
+
+    private int nextChunk;
+    private int trackIndex = -1;
+    private int trackStart;
+    private int trackEnd;
+    private String trackName;
+
+    private int position;
+    private long tick;
+    private int runningStatus;
+
+    private int status;
+    private int data1;
+    private int data2;
+    private int metaType;
+    private int dataOffset;
+    private int dataLength;
+
+    private SmfReader(ByteBuffer bytes) throws IOException {
+        this.bytes = bytes;
+        if (bytes.limit() < 14 || !chunkTypeIs(0, "MThd")) {
+            throw new IOException("Invalid MIDI file: missing MThd header");
+        }
+        int headerLength = bytes.getInt(4);
+        trackCount = bytes.getShort(10) & 0xFFFF;
+        int division = bytes.getShort(12);
+        if (division < 0) {
+            // SMPTE timing: ticks per frame, which is what javax.sound reports as the resolution.
+            division &= 0xFF;
+        }
+        resolution = division;
+        nextChunk = 8 + headerLength;
+    }
+
+    /** Reads the whole file onto the heap; see {@link ChartText} for why it is not mapped. */
+    static SmfReader open(Path path) throws IOException {
+        return new SmfReader(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    static SmfReader of(ByteBuffer bytes) throws IOException {
+        return new SmfReader(bytes.duplicate());
+    }
+
+    int resolution() {
+        return resolution;
+    }
+
+    int trackIndex() {
+        return trackIndex;
+    }
+
+    /**
+     * Moves to the next MTrk chunk, skipping any unknown chunk types. Only the track name is
+     * looked up; events are not decoded until {@link #nextEvent()} is called.
+     */
+    boolean nextTrack() throws IOException {
+        while (trackIndex + 1 < trackCount && nextChunk + 8 <= bytes.limit()) {
+            int chunkStart = nextChunk;
+            int length = bytes.getInt(chunkStart + 4);
+            if (length < 0 || chunkStart + 8L + length > bytes.limit()) {
+                throw new IOException("Invalid MIDI file: truncated chunk at offset " + chunkStart);
+            }
+            nextChunk = chunkStart + 8 + length;
+            if (!chunkTypeIs(chunkStart, "MTrk")) {
+                continue;
+            }
+            trackIndex++;
+            trackStart = chunkStart + 8;
+            trackEnd = nextChunk;
+            trackName = null;
+            rewindTrack();
+            return true;
+        }
+        return false;
+    }
+
+    /** Name from the track's first 0x03 meta event, or "" if it has none. */
+    String trackName() throws IOException {
+        if (trackName == null) {
+            int savedPosition = position;
+            long savedTick = tick;
+            int savedRunningStatus = runningStatus;
+            rewindTrack();
+            trackName = "";
+            while (nextEvent()) {
+                if (status == META && metaType == 0x03) {
+                    trackName = new String(metaData(), StandardCharsets.US_ASCII).trim();
+                    break;
+                }
+            }
+            position = savedPosition;
+            tick = savedTick;
+            runningStatus = savedRunningStatus;
+        }
+        return trackName;
+    }
+
+    /** Decodes the next event of the current track; returns false at the end of the chunk. */
+    boolean nextEvent() throws IOException {
+        if (position >= trackEnd) {
+            return false;
+        }
+        tick += readVariableLength();
+        int b = readByte();
+        if (b >= 0x80) {
+            position++;
+        } else if (runningStatus != 0) {
+            b = runningStatus;
+        } else {
+            throw new IOException("Invalid MIDI file: data byte without status in track " + trackIndex);
+        }
+
+        if (b == META) {
+            status = META;
+            metaType = readByte();
+            position++;
+            dataLength = (int) readVariableLength();
+            dataOffset = position;
+            position += dataLength;
+        } else if (b == 0xF0 || b == 0xF7) {
+            status = SYSEX;
+            dataLength = (int) readVariableLength();
+            dataOffset = position;
+            position += dataLength;
+        } else {
+            status = b;
+            runningStatus = b;
+            int command = b & 0xF0;
+            data1 = readByte();
+            position++;
+            if (command != 0xC0 && command != 0xD0) {
+                data2 = readByte();
+                position++;
+            } else {
+                data2 = 0;
+            }
+        }
+        if (position > trackEnd) {
+            throw new IOException("Invalid MIDI file: event runs past end of track " + trackIndex);
+        }
+        return true;
+    }
+
+    long tick() {
+        return tick;
+    }
+
+    /** Status byte of a channel event, or {@link #META} / {@link #SYSEX}. */
+    int status() {
+        return status;
+    }
+
+    int command() {
+        return status & 0xF0;
+    }
+
+    int data1() {
+        return data1;
+    }
+
+    int data2() {
+        return data2;
+    }
+
+    int metaType() {
+        return metaType;
+    }
+
+    int dataLength() {
+        return dataLength;
+    }
+
+    int dataByte(int index) {
+        return bytes.get(dataOffset + index) & 0xFF;
+    }
+
+    byte[] metaData() {
+        byte[] data = new byte[dataLength];
+        for (int i = 0; i < dataLength; i++) {
+            data[i] = bytes.get(dataOffset + i);
+        }
+        return data;
+    }
+
+    private void rewindTrack() {
+        position = trackStart;
+        tick = 0;
+        runningStatus = 0;
+    }
+
+    private int readByte() throws IOException {
+        if (position >= trackEnd) {
+            throw new IOException("Invalid MIDI file: unexpected end of track " + trackIndex);
+        }
+        return bytes.get(position) & 0xFF;
+    }
+
+    private long readVariableLength() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = readByte();
+            position++;
+            value = (value << 7) | (b & 0x7F);
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid MIDI file: variable-length value too long in track " + trackIndex);
+    }
+
+    private boolean chunkTypeIs(int offset, String type) {
+        for (int i = 0; i < 4; i++) {
+            if (bytes.get(offset + i) != type.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
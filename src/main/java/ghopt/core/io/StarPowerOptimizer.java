@@ -1,7 +1,8 @@
 package ghopt.core.io;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -11,9 +12,16 @@ import java.util.Set;
 
 public class StarPowerOptimizer {
 
+    public enum SolverMode {
+        RECURSIVE,  // top-down memoized recursion, kept as the reference implementation
+        ITERATIVE,  // bottom-up loop over groups with flat primitive score tables, for any rules
+        SPECIALIZED // ITERATIVE with the state space pruned for the rules; the default
+    }
+
     public static class OptimalPath {
         public List<Integer> activationTimes;
         public long totalScore;
+        public PathTrace trace; // only from the solvers' debug mode; see trace(ColumnarChartData, Rules, List)
 
         public OptimalPath(List<Integer> activationTimes, long totalScore) {
             this.activationTimes = new ArrayList<>(activationTimes);
@@ -57,130 +65,213 @@ public class StarPowerOptimizer {
 
     private static class DPResult {
         long score;
-        List<Integer> activations;
+        boolean activate; // decision taken in this state; the path is replayed from these
 
-        DPResult(long score, List<Integer> activations) {
+        DPResult(long score, boolean activate) {
             this.score = score;
-            this.activations = new ArrayList<>(activations);
+            this.activate = activate;
         }
     }
 
-    private static class GroupInfo {
+    private interface DecisionLookup {
+        boolean activates(int groupIndex, int starPowerMeter);
+    }
+
+    static class GroupInfo {
         int time;
         int noteCount;
         long sustainPoints;
         int baseMultiplier;
-        int ticksPerBar;
-        int deltaTicks;
+        int drainUnits; // meter lost between this group and the next while star power is active
         boolean phraseComplete;
     }
 
-    private static final int NOTE_POINTS = 50;
-    private static final int SUSTAIN_POINTS_PER_BEAT = 25;
-    private static final int MAX_METER = 200;
-    private static final int PHRASE_GAIN = 50; // 25% in a 0-200 meter
-    private static final int ACTIVATION_THRESHOLD = 100; // 50% in a 0-200 meter
-    private static final int DRAIN_PER_BAR = 25; // 12.5% in a 0-200 meter
+    static final int MAX_METER = 200; // a full star power bar; Rules amounts are in these units
+
+    // Flat table layout for the iterative solver: one row per group, each row holds
+    // every meter value for the inactive flag followed by every meter value for the active flag.
+    static final int METER_STATES = MAX_METER + 1;
+    static final int STATES_PER_GROUP = METER_STATES * 2;
 
     public static OptimalPath findOptimalPath(ChartParser.ChartData chartData) {
         return findOptimalPath(chartData, false);
     }
 
     public static OptimalPath findOptimalPath(ChartParser.ChartData chartData, boolean debug) {
-        if (chartData.notes.isEmpty()) {
+        return findOptimalPath(chartData, debug, SolverMode.SPECIALIZED);
+    }
+
+    public static OptimalPath findOptimalPath(ChartParser.ChartData chartData, boolean debug, SolverMode mode) {
+        return findOptimalPath(ColumnarChartData.from(chartData), debug, mode);
+    }
+
+    public static OptimalPath findOptimalPath(ColumnarChartData chartData) {
+        return findOptimalPath(chartData, false);
+    }
+
+    public static OptimalPath findOptimalPath(ColumnarChartData chartData, boolean debug) {
+        return findOptimalPath(chartData, debug, SolverMode.SPECIALIZED);
+    }
+
+    public static OptimalPath findOptimalPath(ColumnarChartData chartData, boolean debug, SolverMode mode) {
+        return findOptimalPath(chartData, Rules.CLONE_HERO, debug, mode);
+    }
+
+    public static OptimalPath findOptimalPath(ColumnarChartData chartData, Rules rules) {
+        return findOptimalPath(chartData, rules, false, SolverMode.SPECIALIZED);
+    }
+
+    public static OptimalPath findOptimalPath(ColumnarChartData chartData, Rules rules, boolean debug, SolverMode mode) {
+        if (chartData.noteCount == 0) {
             return new OptimalPath(new ArrayList<>(), 0);
         }
 
-        List<ChartParser.Note> notes = new ArrayList<>(chartData.notes);
-        notes.sort(Comparator.comparingInt(n -> n.time));
+        List<GroupInfo> groups = prepareGroups(chartData, rules);
+        return solve(groups, rules, debug, mode);
+    }
 
-        List<GroupInfo> groups = buildGroups(notes, chartData);
-        Set<Integer> phraseCompletionTimes = getPhraseCompletionTimes(groups, chartData.starPowerPhrases);
-        for (GroupInfo group : groups) {
-            group.phraseComplete = phraseCompletionTimes.contains(group.time);
+    // Split out of findOptimalPath so benchmarks can time group building and solving separately.
+    static List<GroupInfo> prepareGroups(ColumnarChartData chartData, Rules rules) {
+        List<GroupInfo> groups = buildGroups(chartData, rules);
+        markPhraseCompletions(groups, chartData.phraseIndex());
+        return groups;
+    }
+
+    static OptimalPath solve(List<GroupInfo> groups, Rules rules, boolean debug, SolverMode mode) {
+        if (groups.isEmpty()) {
+            return new OptimalPath(new ArrayList<>(), 0);
         }
 
-        Map<State, DPResult> memo = new HashMap<>();
-        State initial = new State(0, 0, false);
-        DPResult result = dpSolve(groups, initial, memo);
+        long start = System.nanoTime();
+        long totalScore;
+        List<Integer> activations;
+        long cellsComputed;
+        long memoSize;
+        if (mode == SolverMode.RECURSIVE) {
+            Map<State, DPResult> memo = new HashMap<>();
+            State initial = new State(0, 0, false);
+            totalScore = dpSolve(groups, rules, initial, memo).score;
+            activations = replayDecisions(groups, rules, (g, meter) -> memo.get(new State(g, meter, false)).activate);
+            cellsComputed = memo.size();
+            memoSize = memo.size();
+        } else if (mode == SolverMode.ITERATIVE) {
+            BitSet decisions = new BitSet(groups.size() * METER_STATES);
+            totalScore = iterativeSolve(groups, rules, decisions);
+            activations = replayDecisions(groups, rules, (g, meter) -> decisions.get(g * METER_STATES + meter));
+            cellsComputed = (long) groups.size() * STATES_PER_GROUP;
+            memoSize = (long) groups.size() * METER_STATES;
+        } else {
+            // Star power always ends with an empty meter, so an inactive meter is always a
+            // whole number of phrases; the specialized solvers keep only those levels.
+            int levels = meterLevels(rules);
+            BitSet decisions = new BitSet(groups.size() * levels);
+            totalScore = rules.phrasesExtendStarPower
+                    ? extendingSolve(groups, rules, decisions)
+                    : nonExtendingSolve(groups, rules, decisions);
+            activations = replayDecisions(groups, rules,
+                    (g, meter) -> decisions.get(g * levels + level(meter, rules)));
+            cellsComputed = (long) groups.size() * (rules.phrasesExtendStarPower ? levels + MAX_METER : levels);
+            memoSize = (long) groups.size() * levels;
+        }
 
+        if (Metrics.enabled()) {
+            Metrics.optimized(mode.name(), System.nanoTime() - start, groups.size(), cellsComputed, memoSize,
+                    peakMeter(groups, rules, activations));
+        }
+        OptimalPath path = new OptimalPath(activations, totalScore);
         if (debug) {
-            printDebugTrace(groups, result.activations);
+            path.trace = trace(groups, rules, activations);
         }
-
-        return new OptimalPath(result.activations, result.score);
+        return path;
     }
 
     public static long calculateBaseScore(ChartParser.ChartData chartData) {
-        if (chartData.notes.isEmpty()) {
+        return calculateBaseScore(ColumnarChartData.from(chartData));
+    }
+
+    public static long calculateBaseScore(ColumnarChartData chartData) {
+        return calculateBaseScore(chartData, Rules.CLONE_HERO);
+    }
+
+    public static long calculateBaseScore(ColumnarChartData chartData, Rules rules) {
+        if (chartData.noteCount == 0) {
             return 0;
         }
 
-        List<ChartParser.Note> notes = new ArrayList<>(chartData.notes);
-        notes.sort(Comparator.comparingInt(n -> n.time));
-
-        List<GroupInfo> groups = buildGroups(notes, chartData);
+        List<GroupInfo> groups = buildGroups(chartData, rules);
         
         long totalScore = 0;
         for (GroupInfo group : groups) {
-            long groupBasePoints = (long) NOTE_POINTS * group.noteCount + group.sustainPoints;
-            totalScore += groupBasePoints * group.baseMultiplier;
+            totalScore += groupScore(group, rules);
         }
         
         return totalScore;
     }
 
-    private static void printDebugTrace(List<GroupInfo> groups, List<Integer> activations) {
+    /** The fullest the meter is between two groups along a path. */
+    static int peakMeter(List<GroupInfo> groups, Rules rules, List<Integer> activations) {
+        Set<Integer> activationSet = new HashSet<>(activations);
+        int meter = 0;
+        int peak = 0;
+        boolean active = false;
+        for (GroupInfo group : groups) {
+            meter = meterAfterGain(group, rules, meter, active);
+            active = active || activationSet.contains(group.time);
+            meter = applyDrain(meter, active, group);
+            active = active && meter > 0;
+            peak = Math.max(peak, meter);
+        }
+        return peak;
+    }
+
+    /**
+     * Replays a path event by event under the standard meter model. For a path from
+     * {@link ExtendedOptimizer} the activations are the same but the meter and score differ,
+     * since whammy and squeezes are left out.
+     */
+    public static PathTrace trace(ColumnarChartData chartData, Rules rules, List<Integer> activations) {
+        List<GroupInfo> groups = chartData.noteCount == 0 ? new ArrayList<>() : prepareGroups(chartData, rules);
+        return trace(groups, rules, activations);
+    }
+
+    static PathTrace trace(List<GroupInfo> groups, Rules rules, List<Integer> activations) {
+        // Every group, at most one event per completed phrase, and two per activation.
+        long events = groups.size() + 2L * activations.size();
+        for (GroupInfo group : groups) {
+            if (group.phraseComplete) {
+                events++;
+            }
+        }
+        PathTrace trace = new PathTrace((int) Math.max(1, Math.min(PathTrace.MAX_CAPACITY, events)));
         Set<Integer> activationSet = new HashSet<>(activations);
         int meter = 0;
         boolean active = false;
         long score = 0;
-        
-        System.out.println("\n=== Debug Trace ===");
-        int activationCount = 0;
         for (int i = 0; i < groups.size(); i++) {
-            GroupInfo g = groups.get(i);
-            
-            // Gain phrase
-            if (g.phraseComplete) {
-                meter = Math.min(MAX_METER, meter + PHRASE_GAIN);
-                System.out.println("PHRASE at time " + g.time + " | Meter now: " + meter + " (" + (meter/2.0) + "%)");
+            GroupInfo group = groups.get(i);
+            int gained = meterAfterGain(group, rules, meter, active);
+            if (group.phraseComplete && gained > meter) {
+                trace.record(PathTrace.Event.PHRASE, i, group.time, gained, score);
             }
-            
-            // Check for activation
-            if (activationSet.contains(g.time)) {
-                activationCount++;
+            meter = gained;
+            if (!active && activationSet.contains(group.time)) {
                 active = true;
-                System.out.println(">>> ACTIVATE #" + activationCount + " at time " + g.time + " | Meter: " + meter + " (" + (meter/2.0) + "%) | Combo: " + g.baseMultiplier + "x -> " + (g.baseMultiplier * 2) + "x");
+                trace.record(PathTrace.Event.ACTIVATE, i, group.time, meter, score);
             }
-            
-            // Score this group
-            long groupBase = (long) NOTE_POINTS * g.noteCount + g.sustainPoints;
-            int mult = g.baseMultiplier * (active ? 2 : 1);
-            long groupScore = groupBase * mult;
-            score += groupScore;
-            
-            // Drain
-            if (active) {
-                int oldMeter = meter;
-                int drainUnits = (g.ticksPerBar > 0 && g.deltaTicks > 0) 
-                    ? (DRAIN_PER_BAR * g.deltaTicks) / g.ticksPerBar 
-                    : 0;
-                meter = Math.max(0, meter - drainUnits);
-                
-                if (meter == 0 && oldMeter > 0) {
-                    active = false;
-                    System.out.println("<<< SP ENDED after group " + i + " at time " + g.time + " | Drained from " + oldMeter + " to 0");
-                }
+            score += groupScore(group, rules) * (active ? rules.starPowerMultiplier : 1);
+            meter = applyDrain(meter, active, group);
+            trace.record(PathTrace.Event.GROUP, i, group.time, meter, score);
+            if (active && meter == 0) {
+                active = false;
+                trace.record(PathTrace.Event.SP_END, i, group.time, meter, score);
             }
         }
-        System.out.println("Final Score: " + score);
-        System.out.println("===================\n");
+        return trace;
     }
 
-    private static DPResult dpSolve(List<GroupInfo> groups, State state, Map<State, DPResult> memo) {
+    private static DPResult dpSolve(List<GroupInfo> groups, Rules rules, State state, Map<State, DPResult> memo) {
         if (state.groupIndex >= groups.size()) {
-            return new DPResult(0, new ArrayList<>());
+            return new DPResult(0, false);
         }
 
         DPResult cached = memo.get(state);
@@ -190,173 +281,388 @@ public class StarPowerOptimizer {
 
         GroupInfo group = groups.get(state.groupIndex);
 
-        int meterAfterGain = state.starPowerMeter + (group.phraseComplete ? PHRASE_GAIN : 0);
-        meterAfterGain = Math.min(MAX_METER, meterAfterGain);
+        int meterAfterGain = meterAfterGain(group, rules, state.starPowerMeter, state.starPowerActive);
 
-        long groupBasePoints = (long) NOTE_POINTS * group.noteCount + group.sustainPoints;
-        int baseMultiplier = group.baseMultiplier;
+        long groupBasePoints = groupScore(group, rules);
 
         long bestScore = Long.MIN_VALUE;
-        List<Integer> bestPath = new ArrayList<>();
+        boolean bestActivate = false;
 
         // Option 1: do not activate now.
         boolean activeNow = state.starPowerActive;
-        int effectiveMultiplier = baseMultiplier * (activeNow ? 2 : 1);
-        long scoreNoActivate = groupBasePoints * effectiveMultiplier;
+        long scoreNoActivate = groupBasePoints * (activeNow ? rules.starPowerMultiplier : 1);
 
         int meterAfterNoActivate = meterAfterGain;
         int meterAfterDrain = applyDrain(meterAfterNoActivate, activeNow, group);
         boolean activeNext = activeNow && meterAfterDrain > 0;
 
         State nextNoActivate = new State(state.groupIndex + 1, meterAfterDrain, activeNext);
-        DPResult resultNoActivate = dpSolve(groups, nextNoActivate, memo);
+        DPResult resultNoActivate = dpSolve(groups, rules, nextNoActivate, memo);
         long totalNoActivate = scoreNoActivate + resultNoActivate.score;
 
         if (totalNoActivate > bestScore) {
             bestScore = totalNoActivate;
-            bestPath = new ArrayList<>(resultNoActivate.activations);
         }
 
         // Option 2: activate now if allowed (check after phrase gain).
-        if (!state.starPowerActive && meterAfterGain >= ACTIVATION_THRESHOLD) {
+        if (!state.starPowerActive && meterAfterGain >= rules.activationThreshold) {
             boolean activeNowActivate = true;
-            int effectiveMultiplierActivate = baseMultiplier * 2;
-            long scoreActivate = groupBasePoints * effectiveMultiplierActivate;
+            long scoreActivate = groupBasePoints * rules.starPowerMultiplier;
 
             int meterAfterActivate = meterAfterGain;
             int meterAfterDrainActivate = applyDrain(meterAfterActivate, activeNowActivate, group);
             boolean activeNextActivate = meterAfterDrainActivate > 0;
 
             State nextActivate = new State(state.groupIndex + 1, meterAfterDrainActivate, activeNextActivate);
-            DPResult resultActivate = dpSolve(groups, nextActivate, memo);
+            DPResult resultActivate = dpSolve(groups, rules, nextActivate, memo);
             long totalActivate = scoreActivate + resultActivate.score;
 
             if (totalActivate > bestScore) {
                 bestScore = totalActivate;
-                bestPath = new ArrayList<>(resultActivate.activations);
-                bestPath.add(group.time);
+                bestActivate = true;
             }
         }
 
-        DPResult best = new DPResult(bestScore, bestPath);
+        DPResult best = new DPResult(bestScore, bestActivate);
         memo.put(state, best);
         return best;
     }
 
-    private static int applyDrain(int meter, boolean active, GroupInfo group) {
-        if (!active || meter <= 0) {
-            return meter;
+    private static long iterativeSolve(List<GroupInfo> groups, Rules rules, BitSet decisions) {
+        // Only two rows of scores are live at once; the chosen move for each inactive
+        // state is kept as one bit so the path can be replayed afterwards.
+        long[] next = new long[STATES_PER_GROUP]; // zeroed: nothing is left to score past the last group
+        long[] current = new long[STATES_PER_GROUP];
+
+        for (int g = groups.size() - 1; g >= 0; g--) {
+            backwardRow(groups.get(g), rules, next, current, decisions, g * METER_STATES);
+            long[] swap = next;
+            next = current;
+            current = swap;
         }
-        if (group.ticksPerBar <= 0 || group.deltaTicks <= 0) {
-            return meter;
+
+        return next[0];
+    }
+
+    /**
+     * Fills {@code current}, the best score from each state at {@code group} to the end of the
+     * chart, from {@code next}, the same for the following group. Inactive states that should
+     * activate here are set in {@code decisions} (when given) at {@code decisionRow + meter}.
+     */
+    static void backwardRow(GroupInfo group, Rules rules, long[] next, long[] current, BitSet decisions, int decisionRow) {
+        long scoreInactive = groupScore(group, rules);
+        long scoreActive = scoreInactive * rules.starPowerMultiplier;
+
+        for (int meter = 0; meter <= MAX_METER; meter++) {
+            int meterAfterGain = meterAfterGain(group, rules, meter, false);
+
+            // Inactive: carry the meter forward, or activate if allowed.
+            long best = scoreInactive + next[meterAfterGain];
+            if (meterAfterGain >= rules.activationThreshold) {
+                long activate = scoreActive + next[activeSlot(applyDrain(meterAfterGain, true, group))];
+                if (activate > best) {
+                    best = activate;
+                    if (decisions != null) {
+                        decisions.set(decisionRow + meter);
+                    }
+                }
+            }
+            current[meter] = best;
+
+            // Active: the meter drains and star power ends once it hits zero.
+            int activeMeterAfterGain = meterAfterGain(group, rules, meter, true);
+            current[METER_STATES + meter] =
+                    scoreActive + next[activeSlot(applyDrain(activeMeterAfterGain, true, group))];
         }
+    }
 
-        int drainUnits = (DRAIN_PER_BAR * group.deltaTicks) / group.ticksPerBar;
-        int drained = meter - drainUnits;
-        return Math.max(0, drained);
+    /**
+     * The forward counterpart of {@link #backwardRow}: from {@code current}, the best score of
+     * the groups before {@code group} for reaching each state (Long.MIN_VALUE if unreachable),
+     * fills {@code next} for the following group. {@code from} records, per reached state, the
+     * state it came from shifted left by one, with the low bit set when that step activated.
+     */
+    static void forwardRow(GroupInfo group, Rules rules, long[] current, long[] next, short[] from) {
+        long scoreInactive = groupScore(group, rules);
+        long scoreActive = scoreInactive * rules.starPowerMultiplier;
+        Arrays.fill(next, Long.MIN_VALUE);
+
+        for (int slot = 0; slot < STATES_PER_GROUP; slot++) {
+            long score = current[slot];
+            if (score == Long.MIN_VALUE) {
+                continue;
+            }
+            boolean active = slot >= METER_STATES;
+            int meterAfterGain = meterAfterGain(group, rules, active ? slot - METER_STATES : slot, active);
+            int drained = activeSlot(applyDrain(meterAfterGain, true, group));
+
+            if (active) {
+                relax(next, from, drained, score + scoreActive, slot << 1);
+            } else {
+                relax(next, from, meterAfterGain, score + scoreInactive, slot << 1);
+                if (meterAfterGain >= rules.activationThreshold) {
+                    relax(next, from, drained, score + scoreActive, (slot << 1) | 1);
+                }
+            }
+        }
     }
 
-    private static List<GroupInfo> buildGroups(List<ChartParser.Note> notes, ChartParser.ChartData chartData) {
-        List<GroupInfo> groups = new ArrayList<>();
-        if (notes.isEmpty()) {
-            return groups;
+    private static void relax(long[] next, short[] from, int slot, long score, int origin) {
+        if (score > next[slot]) {
+            next[slot] = score;
+            from[slot] = (short) origin;
         }
+    }
 
-        int timeSignatureIndex = 0;
-        List<ChartParser.TimeSignatureEvent> timeSignatures = chartData.timeSignatures;
+    /** Whether an inactive state with {@code meter} at {@code group} activates, given the next backward row. */
+    static boolean activates(GroupInfo group, Rules rules, int meter, long[] next) {
+        int meterAfterGain = meterAfterGain(group, rules, meter, false);
+        if (meterAfterGain < rules.activationThreshold) {
+            return false;
+        }
+        long scoreInactive = groupScore(group, rules);
+        return scoreInactive * rules.starPowerMultiplier + next[activeSlot(applyDrain(meterAfterGain, true, group))]
+                > scoreInactive + next[meterAfterGain];
+    }
 
-        int comboCount = 0;
-        int i = 0;
-        while (i < notes.size()) {
-            int time = notes.get(i).time;
-            List<ChartParser.Note> groupNotes = new ArrayList<>();
-            while (i < notes.size() && notes.get(i).time == time) {
-                groupNotes.add(notes.get(i));
-                i++;
+    /** The state slot after {@code group}, starting from {@code slot} and activating or not. */
+    static int nextSlot(GroupInfo group, Rules rules, int slot, boolean activate) {
+        boolean active = slot >= METER_STATES;
+        int meterAfterGain = meterAfterGain(group, rules, active ? slot - METER_STATES : slot, active);
+        return active || activate ? activeSlot(applyDrain(meterAfterGain, true, group)) : meterAfterGain;
+    }
+
+    /**
+     * The Clone Hero solver: {@link #backwardRow} with the inactive half of each row cut down to
+     * the {@link #meterLevels} an inactive meter can actually hold. Rows are the levels followed
+     * by every active meter value; decisions are set at {@code group * levels + level}.
+     */
+    private static long extendingSolve(List<GroupInfo> groups, Rules rules, BitSet decisions) {
+        int levels = meterLevels(rules);
+        long[] next = new long[levels + METER_STATES];
+        long[] current = new long[levels + METER_STATES];
+
+        for (int g = groups.size() - 1; g >= 0; g--) {
+            GroupInfo group = groups.get(g);
+            long scoreInactive = groupScore(group, rules);
+            long scoreActive = scoreInactive * rules.starPowerMultiplier;
+            int gainLevels = group.phraseComplete ? 1 : 0;
+
+            for (int level = 0; level < levels; level++) {
+                int levelAfterGain = Math.min(levels - 1, level + gainLevels);
+                int meterAfterGain = levelMeter(levelAfterGain, rules);
+                long best = scoreInactive + next[levelAfterGain];
+                if (meterAfterGain >= rules.activationThreshold) {
+                    long activate = scoreActive + next[levelActiveSlot(applyDrain(meterAfterGain, true, group), levels)];
+                    if (activate > best) {
+                        best = activate;
+                        decisions.set(g * levels + level);
+                    }
+                }
+                current[level] = best;
             }
 
-            while (timeSignatureIndex + 1 < timeSignatures.size() &&
-                    timeSignatures.get(timeSignatureIndex + 1).time <= time) {
-                timeSignatureIndex++;
+            // An active meter is never empty, so slot levels + 0 is left unused.
+            for (int meter = 1; meter <= MAX_METER; meter++) {
+                int meterAfterGain = meterAfterGain(group, rules, meter, true);
+                current[levels + meter] =
+                        scoreActive + next[levelActiveSlot(applyDrain(meterAfterGain, true, group), levels)];
+            }
+
+            long[] swap = next;
+            next = current;
+            current = swap;
+        }
+
+        return next[0];
+    }
+
+    /**
+     * The Guitar Hero solver. Without phrase gain during star power, an activation's length is
+     * fixed by the meter it starts with, so there are no active states at all: activating jumps
+     * straight to the first group after star power runs out, found by binary search over the
+     * cumulative drain, and scores every group in between from a prefix sum.
+     */
+    private static long nonExtendingSolve(List<GroupInfo> groups, Rules rules, BitSet decisions) {
+        int n = groups.size();
+        int levels = meterLevels(rules);
+        long[] pointsBefore = new long[n + 1];
+        long[] drainBefore = new long[n + 1];
+        for (int g = 0; g < n; g++) {
+            pointsBefore[g + 1] = pointsBefore[g] + groupScore(groups.get(g), rules);
+            drainBefore[g + 1] = drainBefore[g] + groups.get(g).drainUnits;
+        }
+
+        long[] best = new long[(n + 1) * levels]; // row n is zero: nothing left to score
+        for (int g = n - 1; g >= 0; g--) {
+            GroupInfo group = groups.get(g);
+            long scoreInactive = pointsBefore[g + 1] - pointsBefore[g];
+            int gainLevels = group.phraseComplete ? 1 : 0;
+
+            for (int level = 0; level < levels; level++) {
+                int levelAfterGain = Math.min(levels - 1, level + gainLevels);
+                int meterAfterGain = levelMeter(levelAfterGain, rules);
+                long score = scoreInactive + best[(g + 1) * levels + levelAfterGain];
+                if (meterAfterGain >= rules.activationThreshold) {
+                    int end = starPowerEnd(drainBefore, g, meterAfterGain);
+                    long activate = (pointsBefore[end] - pointsBefore[g]) * rules.starPowerMultiplier +
+                            best[end * levels];
+                    if (activate > score) {
+                        score = activate;
+                        decisions.set(g * levels + level);
+                    }
+                }
+                best[g * levels + level] = score;
             }
+        }
 
-            ChartParser.TimeSignatureEvent ts = timeSignatures.get(timeSignatureIndex);
-            int ticksPerQuarterNote = chartData.resolution;
-            int ticksPerBar = calculateTicksPerBar(chartData.resolution, ts.numerator, ts.denominator);
+        return best[0];
+    }
 
+    // First group after star power activated at group g with the given meter has drained away, or n.
+    private static int starPowerEnd(long[] drainBefore, int g, int meter) {
+        int lo = g + 1;
+        int hi = drainBefore.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (drainBefore[mid] - drainBefore[g] >= meter) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    /** Values an inactive meter can hold: empty, then each phrase's gain up to a full bar. */
+    static int meterLevels(Rules rules) {
+        return (MAX_METER + rules.phraseGain - 1) / rules.phraseGain + 1;
+    }
+
+    private static int levelMeter(int level, Rules rules) {
+        return Math.min(MAX_METER, level * rules.phraseGain);
+    }
+
+    private static int level(int meter, Rules rules) {
+        return meter >= MAX_METER ? meterLevels(rules) - 1 : meter / rules.phraseGain;
+    }
+
+    private static int levelActiveSlot(int meterAfterDrain, int levels) {
+        return meterAfterDrain > 0 ? levels + meterAfterDrain : 0;
+    }
+
+    /** True if the two groups score identically in every state; their times may differ. */
+    static boolean sameScoring(GroupInfo a, GroupInfo b) {
+        return a.noteCount == b.noteCount &&
+                a.sustainPoints == b.sustainPoints &&
+                a.baseMultiplier == b.baseMultiplier &&
+                a.drainUnits == b.drainUnits &&
+                a.phraseComplete == b.phraseComplete;
+    }
+
+    static long groupScore(GroupInfo group, Rules rules) {
+        return ((long) rules.notePoints * group.noteCount + group.sustainPoints) * group.baseMultiplier;
+    }
+
+    private static int meterAfterGain(GroupInfo group, Rules rules, int meter, boolean active) {
+        boolean gains = group.phraseComplete && (!active || rules.phrasesExtendStarPower);
+        return Math.min(MAX_METER, meter + (gains ? rules.phraseGain : 0));
+    }
+
+    private static List<Integer> replayDecisions(List<GroupInfo> groups, Rules rules, DecisionLookup decisions) {
+        List<Integer> activations = new ArrayList<>();
+        int meter = 0;
+        boolean active = false;
+        for (int g = 0; g < groups.size(); g++) {
+            GroupInfo group = groups.get(g);
+            int meterAfterGain = meterAfterGain(group, rules, meter, active); // phrases complete before activating
+            if (!active && decisions.activates(g, meter)) {
+                activations.add(group.time);
+                active = true;
+            }
+            meter = applyDrain(meterAfterGain, active, group);
+            active = active && meter > 0;
+        }
+        return activations;
+    }
+
+    private static int activeSlot(int meterAfterDrain) {
+        return meterAfterDrain > 0 ? METER_STATES + meterAfterDrain : 0;
+    }
+
+    private static int applyDrain(int meter, boolean active, GroupInfo group) {
+        if (!active || meter <= 0) {
+            return meter;
+        }
+        return Math.max(0, meter - group.drainUnits);
+    }
+
+    private static List<GroupInfo> buildGroups(ColumnarChartData chartData, Rules rules) {
+        List<GroupInfo> groups = new ArrayList<>();
+        if (chartData.noteCount == 0) {
+            return groups;
+        }
+
+        TempoMap tempoMap = chartData.tempoMap();
+        int[] noteTimes = chartData.noteTimes;
+        int[] noteDurations = chartData.noteDurations;
+
+        int comboCount = 0;
+        int i = 0;
+        while (i < chartData.noteCount) {
+            int time = noteTimes[i];
+            int groupStart = i;
             long sustainPoints = 0;
-            for (ChartParser.Note note : groupNotes) {
-                if (note.duration > 0 && ticksPerQuarterNote > 0) {
-                    double quarterNotes = (double) note.duration / ticksPerQuarterNote;
-                    double sustainPointsDouble = quarterNotes * SUSTAIN_POINTS_PER_BEAT;
-                    sustainPoints += (long) Math.ceil(sustainPointsDouble);
+            while (i < chartData.noteCount && noteTimes[i] == time) {
+                if (noteDurations[i] > 0) {
+                    sustainPoints += (long) Math.ceil(tempoMap.beats(noteDurations[i]) * rules.sustainPointsPerBeat);
                 }
+                i++;
             }
 
-            int baseMultiplier = 1 + (comboCount / 10);
-            if (baseMultiplier > 4) baseMultiplier = 4;
+            int baseMultiplier = rules.baseMultiplier(comboCount);
             comboCount++;
 
             GroupInfo info = new GroupInfo();
             info.time = time;
-            info.noteCount = groupNotes.size();
+            info.noteCount = i - groupStart;
             info.sustainPoints = sustainPoints;
             info.baseMultiplier = baseMultiplier;
-            info.ticksPerBar = ticksPerBar;
-            info.deltaTicks = 0;
+            info.drainUnits = 0;
             info.phraseComplete = false;
             groups.add(info);
         }
 
+        // Drain is per bar, so a span crossing a time signature change drains at each bar length in turn.
+        TempoMap.Cursor cursor = tempoMap.cursor();
         for (int idx = 0; idx < groups.size() - 1; idx++) {
             GroupInfo current = groups.get(idx);
-            GroupInfo next = groups.get(idx + 1);
-            current.deltaTicks = Math.max(0, next.time - current.time);
+            current.drainUnits = cursor.barUnits(current.time, groups.get(idx + 1).time, rules.drainPerBar);
         }
 
         return groups;
     }
 
-    private static int calculateTicksPerBar(int resolution, int numerator, int denominator) {
-        if (denominator <= 0) {
-            return resolution * 4; // Default to 4/4 bar
-        }
-        // A bar contains 'numerator' beats of type 'denominator'
-        // Example: 4/4 = 4 quarter notes = 4 * resolution
-        // Example: 6/8 = 6 eighth notes = 6 * (resolution/2) = 3 * resolution
-        return (resolution * 4 * numerator) / denominator;
-    }
-
-    private static Set<Integer> getPhraseCompletionTimes(List<GroupInfo> groups,
-                                                         List<ChartParser.StarPowerPhrase> phrases) {
-        Set<Integer> completionTimes = new HashSet<>();
-        if (groups.isEmpty() || phrases.isEmpty()) {
-            return completionTimes;
-        }
-
-        List<ChartParser.StarPowerPhrase> sortedPhrases = new ArrayList<>(phrases);
-        sortedPhrases.sort(Comparator.comparingInt(p -> p.start));
-
+    // A phrase is completed by the last note group inside it; groups are in time order, so one
+    // sweep over the phrases (sorted by start) marks every completing group.
+    private static void markPhraseCompletions(List<GroupInfo> groups, PhraseIndex phrases) {
         int groupIdx = 0;
-        for (ChartParser.StarPowerPhrase phrase : sortedPhrases) {
-            while (groupIdx < groups.size() && groups.get(groupIdx).time < phrase.start) {
+        for (int p = 0; p < phrases.phraseCount(); p++) {
+            int phraseStart = phrases.phraseStart(p);
+            int phraseEnd = phrases.phraseEnd(p);
+            while (groupIdx < groups.size() && groups.get(groupIdx).time < phraseStart) {
                 groupIdx++;
             }
 
-            Integer lastTime = null;
+            int lastIdx = -1;
             int scanIdx = groupIdx;
-            while (scanIdx < groups.size() && groups.get(scanIdx).time <= phrase.end) {
-                lastTime = groups.get(scanIdx).time;
+            while (scanIdx < groups.size() && groups.get(scanIdx).time <= phraseEnd) {
+                lastIdx = scanIdx;
                 scanIdx++;
             }
 
             groupIdx = scanIdx;
-            if (lastTime != null) {
-                completionTimes.add(lastTime);
+            if (lastIdx >= 0) {
+                groups.get(lastIdx).phraseComplete = true;
             }
         }
-
-        return completionTimes;
     }
 
     public static void main(String[] args) throws java.io.IOException {
@@ -370,7 +676,7 @@ public class StarPowerOptimizer {
 
         ChartParser.ChartData chartData = ChartParser.parseChart(chartPath);
         long baseScore = calculateBaseScore(chartData);
-        OptimalPath optimalPath = findOptimalPath(chartData, true);
+        OptimalPath optimalPath = findOptimalPath(chartData);
 
         System.out.println("=== Star Power Optimizer Results ===");
         System.out.println("Base Score (no star power): " + baseScore);
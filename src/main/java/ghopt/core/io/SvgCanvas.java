@@ -0,0 +1,198 @@
+package ghopt.core.io;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * {@link ChartCanvas} that streams SVG elements to a writer. Each call becomes one element, so
+ * the document grows with the number of notes rather than with the image area.
+ */
+class SvgCanvas implements ChartCanvas {
+
+    private final Writer out;
+    private final StringBuilder element = new StringBuilder(128);
+    private String color = "#000000";
+    private String opacity = null;
+
+    SvgCanvas(Writer out) {
+        this.out = out;
+    }
+
+    /** Writes the XML prolog and opening svg element. */
+    void begin(int width, int height) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+                + "\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+    }
+
+    void beginGroup(String id) throws IOException {
+        out.write("<g id=\"" + id + "\">\n");
+    }
+
+    void endGroup() throws IOException {
+        out.write("</g>\n");
+    }
+
+    void end() throws IOException {
+        out.write("</svg>\n");
+        out.flush();
+    }
+
+    @Override
+    public void setColor(Color c) {
+        color = "#" + Integer.toHexString(0x1000000 | (c.getRGB() & 0xFFFFFF)).substring(1);
+        opacity = c.getAlpha() == 255 ? null : number(c.getAlpha() / 255.0);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        element.append("<rect x=\"").append(x).append("\" y=\"").append(y)
+                .append("\" width=\"").append(width).append("\" height=\"").append(height).append('"');
+        fillAttributes();
+        emit(true);
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height, float strokeWidth) {
+        element.append("<rect x=\"").append(x).append("\" y=\"").append(y)
+                .append("\" width=\"").append(width).append("\" height=\"").append(height).append('"');
+        strokeAttributes(strokeWidth);
+        emit(true);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        element.append("<line x1=\"").append(x1).append("\" y1=\"").append(y1)
+                .append("\" x2=\"").append(x2).append("\" y2=\"").append(y2).append('"');
+        strokeAttributes(1);
+        emit(true);
+    }
+
+    @Override
+    public void drawString(String text, int x, int y) {
+        element.append("<text x=\"").append(x).append("\" y=\"").append(y)
+                .append("\" font-family=\"Dialog, sans-serif\" font-size=\"12\"");
+        fillAttributes();
+        element.append('>');
+        appendEscaped(text);
+        element.append("</text>");
+        emit(false);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        element.append("<ellipse cx=\"").append(number(x + width / 2.0))
+                .append("\" cy=\"").append(number(y + height / 2.0))
+                .append("\" rx=\"").append(number(width / 2.0))
+                .append("\" ry=\"").append(number(height / 2.0)).append('"');
+        fillAttributes();
+        emit(true);
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        appendPath(shape);
+        fillAttributes();
+        emit(true);
+    }
+
+    @Override
+    public void draw(Shape shape, float strokeWidth) {
+        appendPath(shape);
+        strokeAttributes(strokeWidth);
+        emit(true);
+    }
+
+    private void appendPath(Shape shape) {
+        element.append("<path d=\"");
+        double[] coords = new double[6];
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            switch (it.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                    appendPoints('M', coords, 1);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    appendPoints('L', coords, 1);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    appendPoints('Q', coords, 2);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    appendPoints('C', coords, 3);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    element.append('Z');
+                    break;
+            }
+        }
+        element.append('"');
+        if (shape.getPathIterator(null).getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+            element.append(" fill-rule=\"evenodd\"");
+        }
+    }
+
+    private void appendPoints(char command, double[] coords, int points) {
+        element.append(command);
+        for (int i = 0; i < points * 2; i++) {
+            if (i > 0) element.append(' ');
+            element.append(number(coords[i]));
+        }
+    }
+
+    private void fillAttributes() {
+        element.append(" fill=\"").append(color).append('"');
+        if (opacity != null) {
+            element.append(" fill-opacity=\"").append(opacity).append('"');
+        }
+    }
+
+    private void strokeAttributes(float strokeWidth) {
+        element.append(" fill=\"none\" stroke=\"").append(color).append('"');
+        if (strokeWidth != 1) {
+            element.append(" stroke-width=\"").append(number(strokeWidth)).append('"');
+        }
+        if (opacity != null) {
+            element.append(" stroke-opacity=\"").append(opacity).append('"');
+        }
+    }
+
+    private void appendEscaped(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': element.append("&lt;"); break;
+                case '>': element.append("&gt;"); break;
+                case '&': element.append("&amp;"); break;
+                default: element.append(c);
+            }
+        }
+    }
+
+    /** Writes the buffered element; {@code close} ends it as an empty element. */
+    private void emit(boolean close) {
+        element.append(close ? "/>\n" : "\n");
+        try {
+            out.append(element);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            element.setLength(0);
+        }
+    }
+
+    /** Shortest decimal form with at most two fraction digits. */
+    private static String number(double value) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths % 100 == 0) {
+            return Long.toString(hundredths / 100);
+        }
+        String sign = hundredths < 0 ? "-" : "";
+        long abs = Math.abs(hundredths);
+        long fraction = abs % 100;
+        String digits = fraction % 10 == 0 ? Long.toString(fraction / 10) : (fraction < 10 ? "0" : "") + fraction;
+        return sign + abs / 100 + "." + digits;
+    }
+}
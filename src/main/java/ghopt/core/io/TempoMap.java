@@ -0,0 +1,231 @@
+package ghopt.core.io;
+
+/**
+ * Tempo and time-signature lookup built once per {@link ColumnarChartData}.
+ *
+ * Each tempo segment keeps the microseconds elapsed before it and each time-signature segment
+ * keeps its bar length and the (possibly fractional) bar count before it, so converting a tick
+ * to seconds or to a bar position is a binary search for its segment plus one multiply. A
+ * {@link Cursor} answers non-decreasing queries in O(1) amortized.
+ *
+ * Charts without a tempo at tick 0 play at 120 BPM until their first one; the parser always
+ * supplies a time signature at tick 0.
+ */
+public class TempoMap {
+
+    static final int DEFAULT_MICROSECONDS_PER_QUARTER = 500_000;
+
+    private final int resolution;
+
+    private final int tempoCount;
+    private final int[] tempoTimes;
+    private final int[] microsecondsPerQuarter;
+    private final long[] tempoStartMicros;
+
+    private final int timeSignatureCount;
+    private final int[] timeSignatureTimes;
+    private final int[] ticksPerBar;
+    private final double[] timeSignatureStartBars;
+
+    TempoMap(ColumnarChartData chartData) {
+        this.resolution = chartData.resolution > 0 ? chartData.resolution : 480;
+
+        boolean tempoAtZero = chartData.tempoCount > 0 && chartData.tempoTimes[0] <= 0;
+        int offset = tempoAtZero ? 0 : 1;
+        tempoCount = chartData.tempoCount + offset;
+        tempoTimes = new int[tempoCount];
+        microsecondsPerQuarter = new int[tempoCount];
+        tempoStartMicros = new long[tempoCount];
+        if (!tempoAtZero) {
+            microsecondsPerQuarter[0] = DEFAULT_MICROSECONDS_PER_QUARTER;
+        }
+        for (int i = 0; i < chartData.tempoCount; i++) {
+            tempoTimes[i + offset] = Math.max(0, chartData.tempoTimes[i]);
+            microsecondsPerQuarter[i + offset] = chartData.tempoMicrosecondsPerQuarter[i] > 0
+                    ? chartData.tempoMicrosecondsPerQuarter[i]
+                    : DEFAULT_MICROSECONDS_PER_QUARTER;
+        }
+        for (int i = 1; i < tempoCount; i++) {
+            tempoStartMicros[i] = tempoStartMicros[i - 1] +
+                    segmentMicros(tempoTimes[i] - tempoTimes[i - 1], microsecondsPerQuarter[i - 1]);
+        }
+
+        boolean signatureAtZero = chartData.timeSignatureCount > 0 && chartData.timeSignatureTimes[0] <= 0;
+        offset = signatureAtZero ? 0 : 1;
+        timeSignatureCount = chartData.timeSignatureCount + offset;
+        timeSignatureTimes = new int[timeSignatureCount];
+        ticksPerBar = new int[timeSignatureCount];
+        timeSignatureStartBars = new double[timeSignatureCount];
+        if (!signatureAtZero) {
+            ticksPerBar[0] = calculateTicksPerBar(resolution, 4, 4);
+        }
+        for (int i = 0; i < chartData.timeSignatureCount; i++) {
+            timeSignatureTimes[i + offset] = Math.max(0, chartData.timeSignatureTimes[i]);
+            ticksPerBar[i + offset] = calculateTicksPerBar(resolution,
+                    chartData.timeSignatureNumerators[i], chartData.timeSignatureDenominators[i]);
+        }
+        for (int i = 1; i < timeSignatureCount; i++) {
+            timeSignatureStartBars[i] = timeSignatureStartBars[i - 1] +
+                    (double) (timeSignatureTimes[i] - timeSignatureTimes[i - 1]) / ticksPerBar[i - 1];
+        }
+    }
+
+    public static TempoMap of(ColumnarChartData chartData) {
+        return new TempoMap(chartData);
+    }
+
+    static int calculateTicksPerBar(int resolution, int numerator, int denominator) {
+        if (denominator <= 0 || numerator <= 0) {
+            return resolution * 4; // Default to 4/4 bar
+        }
+        // A bar contains 'numerator' beats of type 'denominator'
+        // Example: 4/4 = 4 quarter notes = 4 * resolution
+        // Example: 6/8 = 6 eighth notes = 6 * (resolution/2) = 3 * resolution
+        return Math.max(1, (resolution * 4 * numerator) / denominator);
+    }
+
+    public int resolution() {
+        return resolution;
+    }
+
+    /** Quarter notes spanned by {@code ticks}, whatever the tempo or time signature. */
+    public double beats(int ticks) {
+        return (double) ticks / resolution;
+    }
+
+    public long micros(int tick) {
+        int i = tempoSegment(tick);
+        return tempoStartMicros[i] + segmentMicros(tick - tempoTimes[i], microsecondsPerQuarter[i]);
+    }
+
+    public double seconds(int tick) {
+        return micros(tick) / 1e6;
+    }
+
+    /** The last tick at or before {@code micros} into the song; the inverse of {@link #micros}. */
+    public int tickAt(long micros) {
+        int lo = 1;
+        int hi = tempoCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tempoStartMicros[mid] <= micros) lo = mid + 1;
+            else hi = mid;
+        }
+        int i = lo - 1;
+        return tempoTimes[i] + (int) Math.floorDiv((micros - tempoStartMicros[i]) * resolution, microsecondsPerQuarter[i]);
+    }
+
+    /** Bars elapsed before {@code tick}; 2.5 is halfway through the third bar. */
+    public double bars(int tick) {
+        int i = timeSignatureSegment(tick);
+        return barsIn(i, tick);
+    }
+
+    /** Length of the bar {@code tick} falls in, in ticks. */
+    public int ticksPerBar(int tick) {
+        return ticksPerBar[timeSignatureSegment(tick)];
+    }
+
+    /**
+     * {@code unitsPerBar} times the bars between the two ticks, rounded down. Inside one time
+     * signature this is exact integer arithmetic.
+     */
+    public int barUnits(int fromTick, int toTick, int unitsPerBar) {
+        return barUnits(timeSignatureSegment(fromTick), fromTick, toTick, unitsPerBar);
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int barUnits(int segment, int fromTick, int toTick, int unitsPerBar) {
+        if (toTick <= fromTick) {
+            return 0;
+        }
+        if (segment + 1 >= timeSignatureCount || timeSignatureTimes[segment + 1] > toTick) {
+            return (int) ((long) unitsPerBar * (toTick - fromTick) / ticksPerBar[segment]);
+        }
+        int toSegment = segment + 1;
+        while (toSegment + 1 < timeSignatureCount && timeSignatureTimes[toSegment + 1] <= toTick) {
+            toSegment++;
+        }
+        double bars = barsIn(toSegment, toTick) - barsIn(segment, fromTick);
+        // The epsilon keeps spans that are whole bars on paper from rounding down a unit.
+        return (int) Math.floor(unitsPerBar * bars + 1e-9);
+    }
+
+    private double barsIn(int segment, int tick) {
+        return timeSignatureStartBars[segment] + (double) (tick - timeSignatureTimes[segment]) / ticksPerBar[segment];
+    }
+
+    private long segmentMicros(int ticks, int microsecondsPerQuarter) {
+        return (long) ticks * microsecondsPerQuarter / resolution;
+    }
+
+    // Last segment starting at or before tick; segment 0 also covers negative ticks.
+    private int tempoSegment(int tick) {
+        return lastAtOrBefore(tempoTimes, tempoCount, tick);
+    }
+
+    private int timeSignatureSegment(int tick) {
+        return lastAtOrBefore(timeSignatureTimes, timeSignatureCount, tick);
+    }
+
+    private static int lastAtOrBefore(int[] times, int count, int tick) {
+        int lo = 1;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= tick) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo - 1;
+    }
+
+    /** Sweeping lookup for ticks queried in non-decreasing order; earlier ticks fall back to a search. */
+    public class Cursor {
+        private int tempo;
+        private int timeSignature;
+
+        public long micros(int tick) {
+            int i = tempoAt(tick);
+            return tempoStartMicros[i] + segmentMicros(tick - tempoTimes[i], microsecondsPerQuarter[i]);
+        }
+
+        public double seconds(int tick) {
+            return micros(tick) / 1e6;
+        }
+
+        public double bars(int tick) {
+            return barsIn(timeSignatureAt(tick), tick);
+        }
+
+        public int ticksPerBar(int tick) {
+            return ticksPerBar[timeSignatureAt(tick)];
+        }
+
+        public int barUnits(int fromTick, int toTick, int unitsPerBar) {
+            return TempoMap.this.barUnits(timeSignatureAt(fromTick), fromTick, toTick, unitsPerBar);
+        }
+
+        private int tempoAt(int tick) {
+            if (tick < tempoTimes[tempo]) {
+                tempo = tempoSegment(tick);
+            }
+            while (tempo + 1 < tempoCount && tempoTimes[tempo + 1] <= tick) {
+                tempo++;
+            }
+            return tempo;
+        }
+
+        private int timeSignatureAt(int tick) {
+            if (tick < timeSignatureTimes[timeSignature]) {
+                timeSignature = timeSignatureSegment(tick);
+            }
+            while (timeSignature + 1 < timeSignatureCount && timeSignatureTimes[timeSignature + 1] <= tick) {
+                timeSignature++;
+            }
+            return timeSignature;
+        }
+    }
+}
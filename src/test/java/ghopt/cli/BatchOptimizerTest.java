@@ -0,0 +1,56 @@
+package ghopt.cli;
+
+import ghopt.core.io.ChartParser;
+import ghopt.core.io.ColumnarChartData;
+import ghopt.core.io.Rules;
+import ghopt.core.io.StarPowerOptimizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchOptimizerTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void batchMatchesSolvingEachSongAlone() throws Exception {
+        List<Path> chartFiles = BatchOptimizer.findChartFiles(Paths.get("resources"));
+        assertFalse(chartFiles.isEmpty(), "no charts under resources/");
+        BatchOptimizer.BatchOptions options = new BatchOptimizer.BatchOptions();
+        options.rules = Rules.GUITAR_HERO;
+        List<BatchOptimizer.SongResult> results = BatchOptimizer.optimizeAll(chartFiles, 2, options);
+
+        assertEquals(chartFiles.size(), results.size());
+        for (BatchOptimizer.SongResult result : results) {
+            assertNull(result.error, result.songFolder);
+            ChartParser.ChartData chart = ChartParser.parseChart(Paths.get(result.songFolder, result.chartFile).toString());
+            StarPowerOptimizer.OptimalPath alone = StarPowerOptimizer.findOptimalPath(
+                    ColumnarChartData.from(chart), Rules.GUITAR_HERO);
+            assertEquals(alone.totalScore, result.optimalScore, result.songFolder);
+            assertEquals(alone.activationTimes, result.activationTimes, result.songFolder);
+        }
+    }
+
+    @Test
+    void unknownOptionsStopBeforeAnyWork() throws Exception {
+        Path summary = temp.resolve("summary.csv");
+        BatchOptimizer.main(new String[]{"resources", summary.toString(), "--cahce", temp.resolve("cache").toString()});
+        assertFalse(Files.exists(summary), "ran despite a mistyped option");
+
+        BatchOptimizer.main(new String[]{"resources", summary.toString(), "--threads"});
+        assertFalse(Files.exists(summary), "ran despite an option without its value");
+
+        BatchOptimizer.main(new String[]{"resources", summary.toString(), "--threads", "1"});
+        assertTrue(Files.exists(summary));
+    }
+}
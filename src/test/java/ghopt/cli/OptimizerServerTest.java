@@ -0,0 +1,219 @@
+package ghopt.cli;
+
+import ghopt.core.io.ChartParser;
+import ghopt.core.io.ChartTiles;
+import ghopt.core.io.ColumnarChartData;
+import ghopt.core.io.Rules;
+import ghopt.core.io.StarPowerOptimizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OptimizerServerTest {
+
+    private static final String SONG = "The Used - I Caught Fire (PeckInkay)";
+
+    @TempDir
+    Path temp;
+
+    private OptimizerServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new OptimizerServer(0, 2, Paths.get("resources"));
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void servesTheSameTilesAsChartTiles() throws IOException {
+        Path chartFile = Paths.get("resources", SONG, "notes.chart");
+        ColumnarChartData chart = ColumnarChartData.from(ChartParser.parseChart(chartFile.toString()));
+        ChartTiles tiles = new ChartTiles(chart, StarPowerOptimizer.findOptimalPath(chart).activationTimes);
+        int zoom = tiles.maxZoom();
+        String query = "?path=" + URLEncoder.encode(SONG + "/notes.chart", StandardCharsets.UTF_8);
+
+        assertArrayEquals(tiles.tile(zoom, 1, 2), get("/tiles/" + zoom + "/1/2" + query, 200));
+        assertArrayEquals(tiles.tile(0, 0, 0), get("/tiles/0/0/0.png" + query, 200));
+        get("/tiles/" + (zoom + 1) + "/0/0" + query, 404);
+        get("/tiles/" + zoom + "/" + tiles.columns(zoom) + "/0" + query, 404);
+        get("/tiles/1/x/0" + query, 400);
+        get("/tiles/1/0" + query, 400);
+    }
+
+    @Test
+    void requestsForAPathBeingSolvedWaitForThatSolve() throws Exception {
+        HeldServer held = new HeldServer();
+        ExecutorService requests = Executors.newFixedThreadPool(3);
+        try {
+            ChartParser.ChartData parsed = ChartParser.parseChart(Paths.get("resources", SONG, "notes.chart").toString());
+            Future<StarPowerOptimizer.OptimalPath> first = requests.submit(
+                    () -> held.findOptimalPath(ColumnarChartData.from(parsed), Rules.GUITAR_HERO, false));
+            assertTrue(held.solving.await(10, TimeUnit.SECONDS));
+            // Separately parsed copies of the same chart share the solve that is running.
+            Future<StarPowerOptimizer.OptimalPath> second = requests.submit(
+                    () -> held.findOptimalPath(ColumnarChartData.from(parsed), Rules.GUITAR_HERO, false));
+            Future<StarPowerOptimizer.OptimalPath> third = requests.submit(
+                    () -> held.findOptimalPath(ColumnarChartData.from(parsed), Rules.GUITAR_HERO, false));
+            awaitCoalesced(held, 2);
+            held.release.countDown();
+
+            long expected = StarPowerOptimizer.findOptimalPath(ColumnarChartData.from(parsed), Rules.GUITAR_HERO).totalScore;
+            assertEquals(expected, first.get().totalScore);
+            assertEquals(expected, second.get().totalScore);
+            assertEquals(expected, third.get().totalScore);
+            assertNotSame(second.get().activationTimes, third.get().activationTimes);
+            assertEquals(1, held.solves.get());
+
+            // Finished paths come from the cache.
+            assertEquals(expected, held.findOptimalPath(ColumnarChartData.from(parsed), Rules.GUITAR_HERO, false).totalScore);
+            assertEquals(1, held.solves.get());
+            assertEquals(2, held.coalescedSolves());
+        } finally {
+            held.release.countDown();
+            requests.shutdownNow();
+            held.stop();
+        }
+    }
+
+    @Test
+    void waitingRequestsFailLikeTheSolveTheyWaitedFor() throws Exception {
+        HeldServer held = new HeldServer();
+        held.failure = new IllegalStateException("solver failed");
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+        try {
+            ColumnarChartData chart = ColumnarChartData.from(ChartParser.parseChart(Paths.get("resources", SONG, "notes.chart").toString()));
+            Future<StarPowerOptimizer.OptimalPath> first = requests.submit(() -> held.findOptimalPath(chart, Rules.CLONE_HERO, false));
+            assertTrue(held.solving.await(10, TimeUnit.SECONDS));
+            Future<StarPowerOptimizer.OptimalPath> second = requests.submit(() -> held.findOptimalPath(chart, Rules.CLONE_HERO, false));
+            awaitCoalesced(held, 1);
+            held.release.countDown();
+
+            for (Future<StarPowerOptimizer.OptimalPath> request : new Future[]{first, second}) {
+                ExecutionException e = assertThrows(ExecutionException.class, request::get);
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+                assertEquals("solver failed", e.getCause().getMessage());
+            }
+            // The failed solve is not left behind for later requests to wait on.
+            held.failure = null;
+            assertEquals(StarPowerOptimizer.findOptimalPath(chart, Rules.CLONE_HERO).totalScore,
+                    held.findOptimalPath(chart, Rules.CLONE_HERO, false).totalScore);
+            assertEquals(2, held.solves.get());
+        } finally {
+            held.release.countDown();
+            requests.shutdownNow();
+            held.stop();
+        }
+    }
+
+    @Test
+    void symlinksCannotReachOutsideTheSongsRoot() throws IOException {
+        Path root = Files.createDirectories(temp.resolve("songs"));
+        Path outside = Files.createDirectories(temp.resolve("private"));
+        Files.copy(Paths.get("resources", SONG, "notes.chart"), outside.resolve("notes.chart"));
+        Files.createDirectories(root.resolve("song"));
+        Files.copy(Paths.get("resources", SONG, "notes.chart"), root.resolve("song/notes.chart"));
+        Files.createSymbolicLink(root.resolve("escape.chart"), outside.resolve("notes.chart"));
+        Files.createSymbolicLink(root.resolve("linked"), outside);
+        Files.createSymbolicLink(root.resolve("alias.chart"), root.resolve("song/notes.chart"));
+
+        OptimizerServer rooted = new OptimizerServer(0, 1, root);
+        rooted.start();
+        try {
+            assertEquals(200, status(rooted, "song/notes.chart"));
+            assertEquals(200, status(rooted, "alias.chart"));
+            assertEquals(403, status(rooted, "escape.chart"));
+            assertEquals(403, status(rooted, "linked/notes.chart"));
+            assertEquals(403, status(rooted, "../private/notes.chart"));
+            assertEquals(404, status(rooted, "missing.chart"));
+        } finally {
+            rooted.stop();
+        }
+    }
+
+    // Blocks its solves until released, so the test decides when the running solve finishes.
+    private static class HeldServer extends OptimizerServer {
+        final CountDownLatch solving = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger solves = new AtomicInteger();
+        volatile RuntimeException failure;
+
+        HeldServer() throws IOException {
+            super(0, 1, null);
+        }
+
+        @Override
+        StarPowerOptimizer.OptimalPath solve(ColumnarChartData chartData, Rules rules, boolean extended) {
+            solves.incrementAndGet();
+            solving.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return super.solve(chartData, rules, extended);
+        }
+    }
+
+    private static void awaitCoalesced(OptimizerServer server, long requests) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.coalescedSolves() < requests) {
+            assertTrue(System.nanoTime() < deadline, "requests never joined the running solve");
+            Thread.sleep(5);
+        }
+    }
+
+    private static int status(OptimizerServer server, String chartPath) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.port() + "/optimize?path=" + URLEncoder.encode(chartPath, StandardCharsets.UTF_8));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    byte[] get(String pathAndQuery, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.port() + pathAndQuery).openConnection();
+        try {
+            assertEquals(expectedStatus, connection.getResponseCode(), pathAndQuery);
+            try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                return in.readAllBytes();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
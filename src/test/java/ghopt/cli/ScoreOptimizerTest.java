@@ -0,0 +1,32 @@
+package ghopt.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScoreOptimizerTest {
+
+    private static final String CHART = Paths.get("resources", "The Used - I Caught Fire (PeckInkay)", "notes.chart").toString();
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void unknownOptionsStopBeforeAnyWork() throws Exception {
+        Path trace = temp.resolve("trace.jsonl");
+        ScoreOptimizer.main(new String[]{CHART, "--trace", trace.toString(), "--extnded"});
+        assertFalse(Files.exists(trace), "ran despite a mistyped option");
+
+        ScoreOptimizer.main(new String[]{CHART, "--json", "--trace"});
+        assertFalse(Files.exists(trace), "ran despite an option without its value");
+
+        ScoreOptimizer.main(new String[]{CHART, "--json", "--trace", trace.toString()});
+        assertTrue(Files.exists(trace));
+    }
+}
@@ -0,0 +1,101 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChartCacheTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        for (Path file : TestCharts.bundledFiles()) {
+            ColumnarChartData chart = ColumnarChartData.from(ChartParser.parseChart(file.toString()));
+            ColumnarChartData read = ChartCache.read(ChartCache.write(chart, 123, 456), 123, 456);
+            assertSameChart(chart, read, file.toString());
+        }
+    }
+
+    @Test
+    void rejectsStaleOrDamagedEntries() throws IOException {
+        ColumnarChartData chart = ColumnarChartData.from(ChartParser.parseChart(TestCharts.bundledFiles().get(0).toString()));
+        ByteBuffer entry = ChartCache.write(chart, 123, 456);
+        assertNull(ChartCache.read(entry.duplicate(), 124, 456), "other size");
+        assertNull(ChartCache.read(entry.duplicate(), 123, 457), "other modification time");
+        assertNull(ChartCache.read(ByteBuffer.wrap(entry.array(), 0, entry.limit() - 1), 123, 456), "truncated");
+
+        ByteBuffer longer = ByteBuffer.allocate(entry.limit() + 1).put(entry.duplicate()).put((byte) 0);
+        longer.flip();
+        assertNull(ChartCache.read(longer, 123, 456), "trailing bytes");
+    }
+
+    @Test
+    void loadKeepsOneEntryPerChart() throws IOException {
+        Path chartFile = temp.resolve("song").resolve("notes.chart");
+        Files.createDirectories(chartFile.getParent());
+        Path source = TestCharts.bundledFiles().stream()
+                .filter(file -> file.toString().endsWith(".chart"))
+                .findFirst().orElseThrow();
+        Files.copy(source, chartFile);
+        ChartCache cache = new ChartCache(temp.resolve("cache"));
+
+        ColumnarChartData parsed = ColumnarChartData.from(ChartParser.parseChart(chartFile.toString()));
+        assertSameChart(parsed, cache.load(chartFile), "first load");
+        assertSameChart(parsed, cache.load(chartFile), "cached load");
+
+        // A blank line changes the file's size but not the chart, so the entry is rewritten in place.
+        Files.write(chartFile, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertSameChart(parsed, cache.load(chartFile), "load after the edit");
+        assertEquals(1, entries(cache.getCacheDir()));
+
+        Map<ChartParser.Track, ColumnarChartData> tracks = cache.loadAllTracks(chartFile);
+        Map<ChartParser.Track, ColumnarChartData> cachedTracks = cache.loadAllTracks(chartFile);
+        assertFalse(tracks.isEmpty());
+        assertEquals(tracks.keySet(), cachedTracks.keySet());
+        for (ChartParser.Track track : tracks.keySet()) {
+            assertSameChart(tracks.get(track), cachedTracks.get(track), track.toString());
+        }
+        assertSameChart(parsed, cachedTracks.get(ChartParser.Track.EXPERT_GUITAR), "expert guitar from all tracks");
+        assertEquals(2, entries(cache.getCacheDir()));
+    }
+
+    private static long entries(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".bin")).count();
+        }
+    }
+
+    private static void assertSameChart(ColumnarChartData expected, ColumnarChartData actual, String name) {
+        assertEquals(expected.resolution, actual.resolution, name);
+        assertEquals(expected.noteCount, actual.noteCount, name);
+        assertArrayEquals(expected.noteTimes, actual.noteTimes, name);
+        assertArrayEquals(expected.noteTypes, actual.noteTypes, name);
+        assertArrayEquals(expected.noteDurations, actual.noteDurations, name);
+        assertArrayEquals(expected.noteFlags, actual.noteFlags, name);
+        assertEquals(expected.phraseCount, actual.phraseCount, name);
+        assertArrayEquals(expected.phraseStarts, actual.phraseStarts, name);
+        assertArrayEquals(expected.phraseEnds, actual.phraseEnds, name);
+        assertEquals(expected.tempoCount, actual.tempoCount, name);
+        assertArrayEquals(expected.tempoTimes, actual.tempoTimes, name);
+        assertArrayEquals(expected.tempoMicrosecondsPerQuarter, actual.tempoMicrosecondsPerQuarter, name);
+        assertEquals(expected.timeSignatureCount, actual.timeSignatureCount, name);
+        assertArrayEquals(expected.timeSignatureTimes, actual.timeSignatureTimes, name);
+        assertArrayEquals(expected.timeSignatureNumerators, actual.timeSignatureNumerators, name);
+        assertArrayEquals(expected.timeSignatureDenominators, actual.timeSignatureDenominators, name);
+    }
+}
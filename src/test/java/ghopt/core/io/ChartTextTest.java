@@ -0,0 +1,78 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChartTextTest {
+
+    private static final String TEXT = "[Song]\r\n{\r\n  Resolution = 192\r\n}\r\n";
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void decodesEveryEncodingTheParserAccepts() {
+        assertDecodes(TEXT, new byte[0], StandardCharsets.US_ASCII);
+        assertDecodes(TEXT, new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, StandardCharsets.UTF_8);
+        assertDecodes(TEXT, new byte[]{(byte) 0xFF, (byte) 0xFE}, StandardCharsets.UTF_16LE);
+        assertDecodes(TEXT, new byte[]{(byte) 0xFE, (byte) 0xFF}, StandardCharsets.UTF_16BE);
+        assertDecodes(TEXT, new byte[0], StandardCharsets.UTF_16LE);
+        assertDecodes(TEXT, new byte[0], StandardCharsets.UTF_16BE);
+        assertDecodes("", new byte[0], StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void parsesUtf16ChartsLikeTheirUtf8Original() throws IOException {
+        Path source = TestCharts.bundledFiles().stream()
+                .filter(file -> file.toString().endsWith(".chart"))
+                .findFirst().orElseThrow();
+        String text = Files.readString(source, StandardCharsets.UTF_8);
+        if (text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+        Path wide = temp.resolve("notes.chart");
+        Files.write(wide, withBom(text, new byte[]{(byte) 0xFF, (byte) 0xFE}, StandardCharsets.UTF_16LE));
+
+        ColumnarChartData expected = ColumnarChartData.from(ChartParser.parseChart(source.toString()));
+        ColumnarChartData actual = ColumnarChartData.from(ChartParser.parseChart(wide.toString()));
+        assertEquals(expected.contentHash(), actual.contentHash());
+    }
+
+    @Test
+    void leavesTheFileFreeToReplace() throws IOException {
+        Path source = TestCharts.bundledFiles().stream()
+                .filter(file -> file.toString().endsWith(".chart"))
+                .findFirst().orElseThrow();
+        Path chart = temp.resolve("notes.chart");
+        Files.copy(source, chart);
+        ChartText text = ChartText.read(chart);
+        String before = text.toString();
+
+        // Truncating the file under a mapping would fault on the next read; the heap copy is unaffected.
+        Files.write(chart, new byte[0]);
+        assertEquals(before, text.toString());
+    }
+
+    private static void assertDecodes(String text, byte[] bom, Charset charset) {
+        ChartText decoded = ChartText.of(ByteBuffer.wrap(withBom(text, bom, charset)));
+        assertEquals(text, decoded.toString(), charset + " with a " + bom.length + " byte mark");
+        assertEquals(text.length(), decoded.length());
+    }
+
+    private static byte[] withBom(String text, byte[] bom, Charset charset) {
+        byte[] body = text.getBytes(charset);
+        byte[] bytes = new byte[bom.length + body.length];
+        System.arraycopy(bom, 0, bytes, 0, bom.length);
+        System.arraycopy(body, 0, bytes, bom.length, body.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,68 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChartTilesTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void fullZoomTilesMatchTheFullRender() throws IOException {
+        ColumnarChartData chart = ColumnarChartData.from(TestCharts.shortChart(new Random(6), 2));
+        List<Integer> activations = StarPowerOptimizer.findOptimalPath(chart).activationTimes;
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ChartRenderer.writePng(chart, png, activations, 1);
+        BufferedImage full = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+
+        ChartTiles tiles = new ChartTiles(chart, activations);
+        int zoom = tiles.maxZoom();
+        int size = ChartTiles.TILE_SIZE;
+        assertEquals((full.getWidth() + size - 1) / size, tiles.columns(zoom));
+        assertEquals((full.getHeight() + size - 1) / size, tiles.rows(zoom));
+        for (int y = 0; y < tiles.rows(zoom); y++) {
+            for (int x = 0; x < tiles.columns(zoom); x++) {
+                BufferedImage tile = ImageIO.read(new ByteArrayInputStream(tiles.tile(zoom, x, y)));
+                int[] expected = new int[size * size]; // transparent past the image's edges
+                int width = Math.min(size, full.getWidth() - x * size);
+                int height = Math.min(size, full.getHeight() - y * size);
+                full.getRGB(x * size, y * size, width, height, expected, 0, size);
+                assertArrayEquals(expected, tile.getRGB(0, 0, size, size, null, 0, size), "tile " + x + "/" + y);
+            }
+        }
+    }
+
+    @Test
+    void zoomZeroFitsTheWholeChartAndOutOfRangeTilesAreRejected() throws IOException {
+        ColumnarChartData chart = ColumnarChartData.from(TestCharts.shortChart(new Random(7), 3));
+        ChartTiles tiles = new ChartTiles(chart, List.of());
+        assertEquals(1, tiles.columns(0));
+        assertEquals(1, tiles.rows(0));
+        assertEquals(ChartTiles.TILE_SIZE, ImageIO.read(new ByteArrayInputStream(tiles.tile(0, 0, 0))).getWidth());
+        assertThrows(IllegalArgumentException.class, () -> tiles.tile(tiles.maxZoom() + 1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> tiles.tile(0, 1, 0));
+    }
+
+    @Test
+    void cachedTilesAreServedUnchanged() throws IOException {
+        ColumnarChartData chart = ColumnarChartData.from(TestCharts.shortChart(new Random(8), 2));
+        List<Integer> activations = StarPowerOptimizer.findOptimalPath(chart).activationTimes;
+        byte[] rendered = new ChartTiles(chart, activations, temp).tile(1, 0, 0);
+        assertArrayEquals(rendered, new ChartTiles(chart, activations, temp).tile(1, 0, 0));
+        assertArrayEquals(rendered, new ChartTiles(chart, activations).tile(1, 0, 0));
+    }
+}
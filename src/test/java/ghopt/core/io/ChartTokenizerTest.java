@@ -0,0 +1,105 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The tokenizer against the String.split parsing it replaced, line by line. */
+class ChartTokenizerTest {
+
+    private static final String[] FIXED = {
+            "  768 = N 0 0", "768 = N 0 0 ", "\t768=N 2 96", "0 = B 120000", "0 = TS 6 3", "0 = TS 4",
+            "768 = S 2 384", "768 = E solo", "Resolution = 192", "[ExpertSingle]", "{", "}", "",
+            "768 =", "= N 0 0", "768 = = N", "768 = N  1  0", "768 = N 0 0 extra tokens here",
+            "-12 = N -1 +5", "2147483647 = N 0 0", "2147483648 = N 0 0", "12a = N 0 0", "768 = N 0 -",
+            "a=b=", "a=b==", "=", "==", "x = \t N 0",
+    };
+
+    @Test
+    void fixedLinesMatchSplit() {
+        for (String line : FIXED) {
+            assertMatchesSplit(line);
+        }
+    }
+
+    @Test
+    void randomLinesMatchSplit() {
+        Random random = new Random(5);
+        char[] alphabet = {'1', '2', '0', '9', '-', '+', ' ', ' ', '=', 'N', 'S', 'B', 'T', '\t'};
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder line = new StringBuilder();
+            int length = random.nextInt(16);
+            for (int c = 0; c < length; c++) {
+                line.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            assertMatchesSplit(line.toString());
+        }
+    }
+
+    @Test
+    void splitsLinesOnAnyLineEnding() {
+        ChartTokenizer tokenizer = new ChartTokenizer("a\r\nb\rc\n\nd");
+        List<String> lines = new ArrayList<>();
+        while (tokenizer.nextLine()) {
+            lines.add(tokenizer.line());
+        }
+        assertEquals(List.of("a", "b", "c", "", "d"), lines);
+    }
+
+    private static void assertMatchesSplit(String line) {
+        ChartTokenizer tokenizer = new ChartTokenizer(line + "\n");
+        assertTrue(tokenizer.nextLine(), line);
+
+        String trimmed = line.trim();
+        assertEquals(trimmed, tokenizer.line(), "line of " + quoted(line));
+        String[] parts = trimmed.split("=");
+        boolean split = parts.length == 2;
+        assertEquals(split, tokenizer.splitKeyValue(), "key/value split of " + quoted(line));
+        if (!split) {
+            return;
+        }
+
+        assertSameInt(parts[0].trim(), tokenizer::keyInt, "key of " + quoted(line));
+        String[] tokens = parts[1].trim().split(" ");
+        assertEquals(tokens.length, tokenizer.tokenCount(), "token count of " + quoted(line));
+        for (int t = 0; t < Math.min(tokens.length, 3); t++) {
+            int index = t;
+            assertTrue(tokenizer.tokenEquals(t, tokens[t]), "token " + t + " of " + quoted(line));
+            assertSameInt(tokens[t], () -> tokenizer.tokenInt(index), "token " + t + " of " + quoted(line));
+            if (!tokens[t].isEmpty()) {
+                assertFalse(tokenizer.tokenEquals(t, tokens[t] + "x"), "token " + t + " of " + quoted(line));
+            }
+        }
+    }
+
+    // Both parse the same number, or both reject the text.
+    private static void assertSameInt(String text, IntCall call, String message) {
+        Integer expected;
+        try {
+            expected = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            expected = null;
+        }
+        Integer actual;
+        try {
+            actual = call.get();
+        } catch (NumberFormatException e) {
+            actual = null;
+        }
+        assertEquals(expected, actual, message);
+    }
+
+    private interface IntCall {
+        int get();
+    }
+
+    private static String quoted(String line) {
+        return "\"" + line.replace("\t", "\\t") + "\"";
+    }
+}
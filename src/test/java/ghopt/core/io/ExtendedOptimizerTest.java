@@ -0,0 +1,28 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtendedOptimizerTest {
+
+    // Whammy and squeezes are optional, so every standard path is also an extended one.
+    @Test
+    void neverScoresBelowTheStandardModel() throws Exception {
+        Random random = new Random(11);
+        List<ColumnarChartData> charts = TestCharts.bundled();
+        for (int i = 0; i < 50; i++) {
+            charts.add(ColumnarChartData.from(TestCharts.random(random)));
+        }
+        for (Rules rules : new Rules[]{Rules.CLONE_HERO, Rules.GUITAR_HERO}) {
+            for (int c = 0; c < charts.size(); c++) {
+                long standard = StarPowerOptimizer.findOptimalPath(charts.get(c), rules).totalScore;
+                long extended = ExtendedOptimizer.findOptimalPath(charts.get(c), rules).totalScore;
+                assertTrue(extended >= standard, rules.name + " chart " + c + ": " + extended + " < " + standard);
+            }
+        }
+    }
+}
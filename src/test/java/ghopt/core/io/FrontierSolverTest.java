@@ -0,0 +1,37 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrontierSolverTest {
+
+    @Test
+    void standardSpansGiveTheTableSolversScores() throws Exception {
+        Random random = new Random(9);
+        List<ColumnarChartData> charts = TestCharts.bundled();
+        for (int i = 0; i < 100; i++) {
+            charts.add(ColumnarChartData.from(TestCharts.random(random)));
+        }
+        for (Rules rules : new Rules[]{Rules.CLONE_HERO, Rules.GUITAR_HERO}) {
+            for (int c = 0; c < charts.size(); c++) {
+                ColumnarChartData chart = charts.get(c);
+                String label = "chart " + c + " under " + rules.name;
+                List<StarPowerOptimizer.GroupInfo> groups = StarPowerOptimizer.prepareGroups(chart, rules);
+                FrontierSolver solver = new FrontierSolver(groups, rules, FrontierSolver.Spans.standard(groups), 1);
+                StarPowerOptimizer.OptimalPath path = solver.run();
+
+                assertEquals(StarPowerOptimizer.findOptimalPath(chart, rules).totalScore, path.totalScore, label);
+                PathTrace trace = StarPowerOptimizer.trace(chart, rules, path.activationTimes);
+                assertEquals(path.totalScore, trace.size() == 0 ? 0 : trace.score(trace.size() - 1), label + ", replayed");
+                // One state per status and meter at most, per group and for the start.
+                long bound = 3L * (StarPowerOptimizer.MAX_METER + 1) * groups.size() + 1;
+                assertTrue(solver.states() <= bound, label + ": " + solver.states() + " states");
+            }
+        }
+    }
+}
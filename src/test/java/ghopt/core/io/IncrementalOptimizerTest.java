@@ -0,0 +1,102 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IncrementalOptimizerTest {
+
+    @Test
+    void matchesFullSolveAfterEditsToBundledCharts() throws IOException {
+        Random random = new Random(42);
+        List<Path> files = TestCharts.bundledFiles();
+        for (int i = 0; i < files.size(); i++) {
+            Rules rules = i % 2 == 0 ? Rules.CLONE_HERO : Rules.GUITAR_HERO;
+            assertMatchesFullSolve(ChartParser.parseChart(files.get(i).toString()), rules, random, 200,
+                    files.get(i).getParent().getFileName().toString());
+        }
+    }
+
+    @Test
+    void matchesFullSolveAfterEditsToRandomCharts() {
+        Random random = new Random(43);
+        for (int i = 0; i < 20; i++) {
+            Rules rules = i % 2 == 0 ? Rules.CLONE_HERO : Rules.GUITAR_HERO;
+            assertMatchesFullSolve(TestCharts.random(random), rules, random, 50, "random chart " + i);
+        }
+    }
+
+    private static void assertMatchesFullSolve(ChartParser.ChartData chart, Rules rules, Random random,
+                                               int edits, String name) {
+        IncrementalOptimizer optimizer = new IncrementalOptimizer(rules);
+        ColumnarChartData first = ColumnarChartData.from(chart);
+        assertEquals(StarPowerOptimizer.findOptimalPath(first, rules).totalScore, optimizer.update(first).totalScore,
+                name + ", first solve");
+
+        for (int e = 0; e < edits; e++) {
+            String edit = edit(chart, random);
+            ColumnarChartData edited = ColumnarChartData.from(chart);
+            StarPowerOptimizer.OptimalPath path = optimizer.update(edited);
+            long full = StarPowerOptimizer.findOptimalPath(edited, rules).totalScore;
+            String label = name + ", edit " + e + " (" + edit + ")";
+            assertEquals(full, path.totalScore, label);
+            // Ties may pick other activations, but they must still earn the optimal score.
+            assertEquals(full, replayedScore(edited, rules, path.activationTimes), label + ", replayed");
+            if (random.nextBoolean()) {
+                optimizer.heal();
+            }
+        }
+    }
+
+    private static String edit(ChartParser.ChartData chart, Random random) {
+        List<ChartParser.Note> notes = chart.notes;
+        switch (random.nextInt(6)) {
+            case 0:
+                if (notes.size() > 1) {
+                    notes.remove(random.nextInt(notes.size()));
+                    return "delete note";
+                }
+                // fall through: too few notes to delete one
+            case 1: {
+                ChartParser.Note near = notes.get(random.nextInt(notes.size()));
+                int duration = random.nextInt(3) == 0 ? random.nextInt(1000) : 0;
+                notes.add(new ChartParser.Note(near.time + 1 + random.nextInt(200), random.nextInt(5), duration));
+                notes.sort(Comparator.comparingInt(note -> note.time));
+                return "insert note";
+            }
+            case 2:
+                notes.get(random.nextInt(notes.size())).duration = random.nextInt(2000);
+                return "change sustain";
+            case 3:
+                if (!chart.starPowerPhrases.isEmpty()) {
+                    chart.starPowerPhrases.remove(random.nextInt(chart.starPowerPhrases.size()));
+                    return "delete phrase";
+                }
+                // fall through: no phrase left to delete
+            case 4: {
+                ChartParser.Note start = notes.get(random.nextInt(notes.size()));
+                chart.starPowerPhrases.add(new ChartParser.StarPowerPhrase(start.time, start.time + 1 + random.nextInt(3000)));
+                chart.starPowerPhrases.sort(Comparator.comparingInt(phrase -> phrase.start));
+                return "insert phrase";
+            }
+            default: {
+                int from = random.nextInt(notes.size());
+                for (int i = from; i < notes.size(); i++) {
+                    notes.get(i).time += 50;
+                }
+                return "shift notes";
+            }
+        }
+    }
+
+    private static long replayedScore(ColumnarChartData chart, Rules rules, List<Integer> activations) {
+        PathTrace trace = StarPowerOptimizer.trace(chart, rules, activations);
+        return trace.size() == 0 ? 0 : trace.score(trace.size() - 1);
+    }
+}
@@ -0,0 +1,101 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OptimalPathCacheTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void editsAndOtherRulesMissTheCache() throws IOException {
+        ChartParser.ChartData chart = TestCharts.random(new Random(3));
+        ColumnarChartData original = ColumnarChartData.from(chart);
+        OptimalPathCache cache = new OptimalPathCache(16);
+        assertEquals(StarPowerOptimizer.findOptimalPath(original, Rules.CLONE_HERO).totalScore,
+                cache.findOptimalPath(original, Rules.CLONE_HERO).totalScore);
+
+        String key = cache.key(original, Rules.CLONE_HERO);
+        assertNotEquals(key, cache.key(original, Rules.GUITAR_HERO));
+        assertNotEquals(key, cache.key(original, Rules.CLONE_HERO, true));
+
+        // The same chart parsed again hits; any edit to it misses and is solved afresh.
+        assertEquals(key, cache.key(ColumnarChartData.from(chart), Rules.CLONE_HERO));
+        chart.notes.get(chart.notes.size() / 2).duration += 480;
+        ColumnarChartData edited = ColumnarChartData.from(chart);
+        assertNotEquals(key, cache.key(edited, Rules.CLONE_HERO));
+        assertNull(cache.get(cache.key(edited, Rules.CLONE_HERO)));
+        assertEquals(StarPowerOptimizer.findOptimalPath(edited, Rules.CLONE_HERO).totalScore,
+                cache.findOptimalPath(edited, Rules.CLONE_HERO).totalScore);
+        assertEquals(ExtendedOptimizer.findOptimalPath(edited, Rules.GUITAR_HERO).totalScore,
+                cache.findOptimalPath(edited, Rules.GUITAR_HERO, true).totalScore);
+    }
+
+    @Test
+    void callersGetTheirOwnCopy() throws IOException {
+        OptimalPathCache cache = new OptimalPathCache(16, temp);
+        cache.put("k", new StarPowerOptimizer.OptimalPath(List.of(10, 20), 1000));
+        StarPowerOptimizer.OptimalPath first = cache.get("k");
+        first.activationTimes.add(30);
+        first.totalScore = 0;
+        StarPowerOptimizer.OptimalPath second = cache.get("k");
+        assertEquals(List.of(10, 20), second.activationTimes);
+        assertEquals(1000, second.totalScore);
+    }
+
+    @Test
+    void diskEntriesSurviveARestart() throws IOException {
+        ColumnarChartData chart = ColumnarChartData.from(TestCharts.random(new Random(4)));
+        StarPowerOptimizer.OptimalPath solved = new OptimalPathCache(16, temp).findOptimalPath(chart, Rules.GUITAR_HERO);
+
+        OptimalPathCache restarted = new OptimalPathCache(16, temp);
+        StarPowerOptimizer.OptimalPath cached = restarted.get(restarted.key(chart, Rules.GUITAR_HERO));
+        assertNotNull(cached);
+        assertEquals(solved.totalScore, cached.totalScore);
+        assertEquals(solved.activationTimes, cached.activationTimes);
+    }
+
+    @Test
+    void diskTierEvictsTheLeastRecentlyUsed() throws Exception {
+        OptimalPathCache cache = new OptimalPathCache(16, temp, 4);
+        for (int i = 0; i < 4; i++) {
+            cache.put("k" + i, new StarPowerOptimizer.OptimalPath(List.of(i), i));
+            Thread.sleep(20); // apart in modification time
+        }
+        // Reading k0 from disk (a fresh instance has nothing in memory) makes it the most recent.
+        assertNotNull(new OptimalPathCache(16, temp, 4).get("k0"));
+        Thread.sleep(20);
+
+        cache.put("k4", new StarPowerOptimizer.OptimalPath(List.of(4), 4));
+        assertEquals(3, entries());
+        OptimalPathCache fresh = new OptimalPathCache(16, temp, 4);
+        assertNull(fresh.get("k1"));
+        assertNull(fresh.get("k2"));
+        assertNotNull(fresh.get("k0"));
+        assertNotNull(fresh.get("k3"));
+        assertNotNull(fresh.get("k4"));
+    }
+
+    private long entries() throws IOException {
+        long count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(temp, "*.txt")) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,107 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PngStripWriterTest {
+
+    @Test
+    void combinedAdler32MatchesTheWholeRun() {
+        Random random = new Random(1);
+        int[] lengths = {0, 1, 2, 100, 65520, 65521, 65522, 200_000};
+        for (int first : lengths) {
+            for (int second : lengths) {
+                byte[] a = new byte[first];
+                byte[] b = new byte[second];
+                random.nextBytes(a);
+                random.nextBytes(b);
+                assertEquals(adler(a, b), PngStripWriter.combineAdler32(adler(a), adler(b), second),
+                        first + " + " + second + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void stripsDecodeToTheSourcePixels() throws IOException {
+        Random random = new Random(2);
+        int width = 37;
+        int height = 50;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            // Noise, flat runs and partly transparent pixels, so every filter gets picked somewhere.
+            pixels[i] = i % 7 == 0 ? random.nextInt() : (i / 11) % 3 == 0 ? 0xFF336699 : 0x80000000 | (i * 31);
+        }
+
+        for (PngStripWriter.Compression compression : PngStripWriter.Compression.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PngStripWriter png = new PngStripWriter(out, width, height);
+            int[] strips = {7, 1, 13, 29};
+            int row = 0;
+            for (int rows : strips) {
+                png.writeStrip(PngStripWriter.encode(pixels, row * width, width, width, rows, row + rows == height, compression));
+                row += rows;
+            }
+            long size = png.finish();
+            assertEquals(out.size(), size);
+            assertArrayEquals(decode(encodeWithImageIO(image)), decode(out.toByteArray()), compression.name());
+        }
+    }
+
+    @Test
+    void renderedChartMatchesImageIO() throws IOException {
+        ColumnarChartData chart = ColumnarChartData.from(TestCharts.shortChart(new Random(5), 3));
+        List<Integer> activations = StarPowerOptimizer.findOptimalPath(chart).activationTimes;
+        int layers = ChartRenderer.layerCount(chart);
+
+        // The whole picture drawn in one image, the way it was before strips.
+        BufferedImage whole = new BufferedImage(ChartRenderer.WIDTH, layers * ChartRenderer.HEIGHT_PER_LAYER,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = whole.createGraphics();
+        int[] starts = ChartRenderer.layerNoteStarts(chart, layers);
+        for (int layer = 0; layer < layers; layer++) {
+            ChartRenderer.drawLayer(new ChartCanvas.GraphicsCanvas(g), chart, activations, layer, starts[layer], starts[layer + 1]);
+        }
+        g.dispose();
+        int[] expected = decode(encodeWithImageIO(whole));
+
+        for (int threads : new int[]{1, 3}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ChartRenderer.writePng(chart, out, activations, threads);
+            assertArrayEquals(expected, decode(out.toByteArray()), threads + " threads");
+        }
+    }
+
+    private static long adler(byte[]... runs) {
+        Adler32 adler = new Adler32();
+        for (byte[] run : runs) {
+            adler.update(run);
+        }
+        return adler.getValue();
+    }
+
+    static byte[] encodeWithImageIO(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /** ARGB pixels of a PNG, row by row. */
+    static int[] decode(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
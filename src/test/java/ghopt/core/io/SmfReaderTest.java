@@ -0,0 +1,178 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/** The SMF reader and the .mid parser against the javax.sound.midi code they replaced. */
+class SmfReaderTest {
+
+    @Test
+    void readsTheSameEventsAsJavaxSound() throws Exception {
+        for (Path file : midiFiles()) {
+            Sequence sequence = MidiSystem.getSequence(file.toFile());
+            SmfReader reader = SmfReader.open(file);
+            assertEquals(sequence.getResolution(), reader.resolution(), file.toString());
+
+            Track[] tracks = sequence.getTracks();
+            int t = 0;
+            while (reader.nextTrack()) {
+                String label = file + ", track " + t;
+                List<String> expected = javaxEvents(tracks[t]);
+                List<String> actual = new ArrayList<>();
+                while (reader.nextEvent()) {
+                    if (reader.status() == SmfReader.META) {
+                        actual.add(reader.tick() + " meta " + reader.metaType() + " " + hex(reader.metaData()));
+                    } else if (reader.status() != SmfReader.SYSEX) {
+                        actual.add(reader.tick() + " " + reader.status() + " " + reader.data1() + " " + reader.data2());
+                    }
+                }
+                assertEquals(expected, actual, label);
+                assertEquals(javaxTrackName(tracks[t]), reader.trackName(), label);
+                t++;
+            }
+            assertEquals(tracks.length, t, file.toString());
+        }
+    }
+
+    @Test
+    void parsesTheSameChartAsTheSequenceParser() throws Exception {
+        for (Path file : midiFiles()) {
+            ChartParser.ChartData expected = parseWithSequence(file);
+            ChartParser.ChartData actual = ChartParser.parseChart(file.toString());
+            String label = file.toString();
+            assertEquals(expected.resolution, actual.resolution, label);
+            assertEquals(notes(expected.notes), notes(actual.notes), label);
+            assertEquals(expected.starPowerPhrases.stream().map(p -> p.start + "-" + p.end).collect(Collectors.toList()),
+                    actual.starPowerPhrases.stream().map(p -> p.start + "-" + p.end).collect(Collectors.toList()), label);
+            assertEquals(expected.tempoEvents.stream().map(e -> e.time + "=" + e.microsecondsPerQuarter).collect(Collectors.toList()),
+                    actual.tempoEvents.stream().map(e -> e.time + "=" + e.microsecondsPerQuarter).collect(Collectors.toList()), label);
+            assertEquals(expected.timeSignatures.stream().map(e -> e.time + "=" + e.numerator + "/" + e.denominator).collect(Collectors.toList()),
+                    actual.timeSignatures.stream().map(e -> e.time + "=" + e.numerator + "/" + e.denominator).collect(Collectors.toList()), label);
+        }
+    }
+
+    private static List<Path> midiFiles() throws IOException {
+        List<Path> files = TestCharts.bundledFiles().stream()
+                .filter(file -> file.toString().endsWith(".mid"))
+                .collect(Collectors.toList());
+        assertFalse(files.isEmpty(), "no .mid charts under resources/");
+        return files;
+    }
+
+    private static List<String> notes(List<ChartParser.Note> notes) {
+        return notes.stream().map(n -> n.time + ":" + n.type + ":" + n.duration).collect(Collectors.toList());
+    }
+
+    // Channel and meta events as javax.sound reports them; sysex is skipped by both parsers.
+    private static List<String> javaxEvents(Track track) {
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < track.size(); i++) {
+            MidiEvent event = track.get(i);
+            MidiMessage message = event.getMessage();
+            if (message instanceof MetaMessage) {
+                MetaMessage meta = (MetaMessage) message;
+                events.add(event.getTick() + " meta " + meta.getType() + " " + hex(meta.getData()));
+            } else if (message instanceof ShortMessage) {
+                ShortMessage sm = (ShortMessage) message;
+                events.add(event.getTick() + " " + sm.getStatus() + " " + sm.getData1() + " " + sm.getData2());
+            }
+        }
+        return events;
+    }
+
+    private static String hex(byte[] data) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static String javaxTrackName(Track track) {
+        for (int i = 0; i < track.size(); i++) {
+            MidiMessage message = track.get(i).getMessage();
+            if (message instanceof MetaMessage && ((MetaMessage) message).getType() == 0x03) {
+                return new String(((MetaMessage) message).getData(), StandardCharsets.US_ASCII).trim();
+            }
+        }
+        return "";
+    }
+
+    // The expert guitar parse from before the SMF reader, kept as the reference. It also merged in
+    // PART GUITAR COOP, which is a track of its own since the single-pass parse.
+    private static ChartParser.ChartData parseWithSequence(Path file) throws IOException, InvalidMidiDataException {
+        ChartParser.ChartData chartData = new ChartParser.ChartData();
+        Sequence sequence = MidiSystem.getSequence(file.toFile());
+        chartData.resolution = sequence.getResolution();
+
+        for (Track track : sequence.getTracks()) {
+            String trackName = javaxTrackName(track).toUpperCase();
+            boolean isGuitarTrack = trackName.equals("PART GUITAR") || trackName.equals("T1 GEMS");
+            Map<Integer, Integer> activeNotes = new HashMap<>();
+
+            for (int i = 0; i < track.size(); i++) {
+                MidiEvent event = track.get(i);
+                MidiMessage message = event.getMessage();
+                int tick = (int) event.getTick();
+
+                if (message instanceof MetaMessage) {
+                    MetaMessage meta = (MetaMessage) message;
+                    byte[] data = meta.getData();
+                    if (meta.getType() == 0x51 && data.length == 3) {
+                        int mpq = ((data[0] & 0xFF) << 16) | ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
+                        chartData.tempoEvents.add(new ChartParser.TempoEvent(tick, mpq));
+                    } else if (meta.getType() == 0x58 && data.length >= 2) {
+                        chartData.timeSignatures.add(new ChartParser.TimeSignatureEvent(tick, data[0] & 0xFF, 1 << (data[1] & 0xFF)));
+                    }
+                } else if (message instanceof ShortMessage && isGuitarTrack) {
+                    ShortMessage sm = (ShortMessage) message;
+                    int cmd = sm.getCommand();
+                    int note = sm.getData1();
+                    int velocity = sm.getData2();
+                    boolean noteOn = cmd == ShortMessage.NOTE_ON && velocity > 0;
+                    boolean noteOff = cmd == ShortMessage.NOTE_OFF || (cmd == ShortMessage.NOTE_ON && velocity == 0);
+
+                    if (noteOn) {
+                        activeNotes.put(note, tick);
+                    } else if (noteOff && activeNotes.containsKey(note)) {
+                        int start = activeNotes.remove(note);
+                        int duration = Math.max(0, tick - start);
+                        if (note >= 96 && note <= 100) {
+                            chartData.notes.add(new ChartParser.Note(start, note - 96, duration));
+                        } else if (note == 116) {
+                            chartData.starPowerPhrases.add(new ChartParser.StarPowerPhrase(start, start + duration));
+                        } else if (note == 106) {
+                            chartData.notes.add(new ChartParser.Note(start, 7, duration));
+                        }
+                    }
+                }
+            }
+        }
+
+        chartData.tempoEvents.sort((a, b) -> Integer.compare(a.time, b.time));
+        chartData.timeSignatures.sort((a, b) -> Integer.compare(a.time, b.time));
+        if (chartData.timeSignatures.isEmpty() || chartData.timeSignatures.get(0).time != 0) {
+            chartData.timeSignatures.add(0, new ChartParser.TimeSignatureEvent(0, 4, 4));
+        }
+        return chartData;
+    }
+}
@@ -0,0 +1,88 @@
+package ghopt.core.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolverModesTest {
+
+    private static final Rules[] RULESETS = {Rules.CLONE_HERO, Rules.GUITAR_HERO};
+
+    @Test
+    void modesAgreeOnBundledCharts() throws Exception {
+        List<ColumnarChartData> charts = TestCharts.bundled();
+        assertFalse(charts.isEmpty(), "no charts under resources/");
+        assertModesAgree(charts, "bundled");
+    }
+
+    @Test
+    void modesAgreeOnRandomCharts() throws Exception {
+        Random random = new Random(7);
+        List<ColumnarChartData> charts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            charts.add(ColumnarChartData.from(TestCharts.random(random)));
+        }
+        assertModesAgree(charts, "random");
+    }
+
+    @Test
+    void reconstructedPathsEarnTheirScore() throws Exception {
+        Random random = new Random(8);
+        List<ColumnarChartData> charts = TestCharts.bundled();
+        for (int i = 0; i < 50; i++) {
+            charts.add(ColumnarChartData.from(TestCharts.random(random)));
+        }
+        for (Rules rules : RULESETS) {
+            for (int c = 0; c < charts.size(); c++) {
+                ColumnarChartData chart = charts.get(c);
+                String label = "chart " + c + " under " + rules.name;
+                assertReplays(chart, rules, solve(chart, rules, StarPowerOptimizer.SolverMode.SPECIALIZED), label + ", SPECIALIZED");
+                assertReplays(chart, rules, solve(chart, rules, StarPowerOptimizer.SolverMode.ITERATIVE), label + ", ITERATIVE");
+                assertReplays(chart, rules, solveRecursive(chart, rules), label + ", RECURSIVE");
+            }
+        }
+    }
+
+    // Replaying the activations the backpointers give must earn exactly the solver's score.
+    private static void assertReplays(ColumnarChartData chart, Rules rules, StarPowerOptimizer.OptimalPath path,
+                                      String label) {
+        PathTrace trace = StarPowerOptimizer.trace(chart, rules, path.activationTimes);
+        assertEquals(path.totalScore, trace.size() == 0 ? 0 : trace.score(trace.size() - 1), label);
+    }
+
+    private static void assertModesAgree(List<ColumnarChartData> charts, String kind) throws Exception {
+        for (Rules rules : RULESETS) {
+            for (int c = 0; c < charts.size(); c++) {
+                ColumnarChartData chart = charts.get(c);
+                String label = kind + " chart " + c + " under " + rules.name;
+                long specialized = solve(chart, rules, StarPowerOptimizer.SolverMode.SPECIALIZED).totalScore;
+                assertEquals(specialized, solve(chart, rules, StarPowerOptimizer.SolverMode.ITERATIVE).totalScore,
+                        label + ", ITERATIVE");
+                assertEquals(specialized, solveRecursive(chart, rules).totalScore, label + ", RECURSIVE");
+            }
+        }
+    }
+
+    static StarPowerOptimizer.OptimalPath solve(ColumnarChartData chart, Rules rules, StarPowerOptimizer.SolverMode mode) {
+        return StarPowerOptimizer.findOptimalPath(chart, rules, false, mode);
+    }
+
+    // The recursive solver goes one frame per group, deeper than a default stack allows on full songs.
+    static StarPowerOptimizer.OptimalPath solveRecursive(ColumnarChartData chart, Rules rules) throws InterruptedException {
+        AtomicReference<StarPowerOptimizer.OptimalPath> path = new AtomicReference<>();
+        Thread thread = new Thread(null,
+                () -> path.set(solve(chart, rules, StarPowerOptimizer.SolverMode.RECURSIVE)),
+                "recursive-solver", 256L << 20);
+        thread.start();
+        thread.join();
+        assertTrue(path.get() != null, "recursive solve failed");
+        return path.get();
+    }
+}
@@ -0,0 +1,77 @@
+package ghopt.core.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Charts shared by the tests: the songs under resources/ and seeded random ones. */
+final class TestCharts {
+
+    private TestCharts() {
+    }
+
+    /** The chart file of every bundled song, .chart preferred, sorted by folder. */
+    static List<Path> bundledFiles() throws IOException {
+        try (Stream<Path> dirs = Files.list(Paths.get("resources"))) {
+            List<Path> files = new ArrayList<>();
+            for (Path dir : dirs.filter(Files::isDirectory).sorted().collect(Collectors.toList())) {
+                for (String name : new String[]{"notes.chart", "notes.mid"}) {
+                    if (Files.isRegularFile(dir.resolve(name))) {
+                        files.add(dir.resolve(name));
+                        break;
+                    }
+                }
+            }
+            return files;
+        }
+    }
+
+    static List<ColumnarChartData> bundled() throws IOException {
+        List<ColumnarChartData> charts = new ArrayList<>();
+        for (Path file : bundledFiles()) {
+            charts.add(ColumnarChartData.from(ChartParser.parseChart(file.toString())));
+        }
+        return charts;
+    }
+
+    /** A few hundred notes with sustains, phrases and sometimes a change to another meter. */
+    static ChartParser.ChartData random(Random random) {
+        ChartParser.ChartData chart = new ChartParser.ChartData();
+        chart.resolution = 192;
+        int tick = 0;
+        int notes = 20 + random.nextInt(400);
+        for (int i = 0; i < notes; i++) {
+            tick += 48 * (1 + random.nextInt(8));
+            int duration = random.nextInt(4) == 0 ? 96 * random.nextInt(6) : 0;
+            chart.notes.add(new ChartParser.Note(tick, random.nextInt(5), duration));
+        }
+        for (int p = 0; p < notes / 8; p++) {
+            int start = random.nextInt(tick);
+            chart.starPowerPhrases.add(new ChartParser.StarPowerPhrase(start, start + 192 * (1 + random.nextInt(4))));
+        }
+        chart.starPowerPhrases.sort(Comparator.comparingInt(phrase -> phrase.start));
+        chart.tempoEvents.add(new ChartParser.TempoEvent(0, 300_000 + random.nextInt(400_000)));
+        chart.timeSignatures.add(new ChartParser.TimeSignatureEvent(0, 4, 4));
+        if (random.nextBoolean()) {
+            chart.timeSignatures.add(new ChartParser.TimeSignatureEvent(192 * 4 * (1 + random.nextInt(10)),
+                    3 + random.nextInt(5), random.nextBoolean() ? 4 : 8));
+        }
+        return chart;
+    }
+
+    /** A random chart cut short after {@code layers} rows of the rendered image. */
+    static ChartParser.ChartData shortChart(Random random, int layers) {
+        ChartParser.ChartData chart = random(random);
+        int end = layers * ChartRenderer.TICKS_PER_LAYER;
+        chart.notes.removeIf(note -> note.time >= end);
+        chart.starPowerPhrases.removeIf(phrase -> phrase.start >= end);
+        return chart;
+    }
+}